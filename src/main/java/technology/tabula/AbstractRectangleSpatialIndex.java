@@ -0,0 +1,124 @@
+package technology.tabula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base of the spatial index backends. Rectangles are identified by their position in
+ * {@link #rectangles}; a backend only finds the ids of the rectangles touching a query box.
+ *
+ * Backends read the coordinates of rectangle <code>id</code> through {@link #left(int)} and
+ * the like. An index bulk-loaded from a list that implements {@link RectangleBounds} keeps
+ * that list and reads the coordinates from it, so a rectangle is only taken from the list
+ * when a query returns it.
+ */
+abstract class AbstractRectangleSpatialIndex<T extends Rectangle> implements RectangleSpatialIndex<T> {
+
+    protected final List<T> rectangles;
+    // coordinates of rectangles when it creates its elements on demand, else null
+    private final RectangleBounds bounds;
+    // ids are ranks in reading order, so results only need their ids sorted
+    private final boolean inReadingOrder;
+
+    /**
+     * @param inReadingOrder rectangles sorted with {@link ReadingOrder} to
+     *                       bulk-load a read-only index from, or null for an empty index
+     */
+    protected AbstractRectangleSpatialIndex(List<T> inReadingOrder) {
+        this.inReadingOrder = inReadingOrder != null;
+        if (inReadingOrder instanceof RectangleBounds) {
+            this.rectangles = inReadingOrder;
+            this.bounds = (RectangleBounds) inReadingOrder;
+        } else {
+            this.rectangles = inReadingOrder == null ? new ArrayList<T>() : new ArrayList<>(inReadingOrder);
+            this.bounds = null;
+        }
+    }
+
+    protected final float left(int id) {
+        return bounds != null ? bounds.getLeft(id) : rectangles.get(id).getLeft();
+    }
+
+    protected final float top(int id) {
+        return bounds != null ? bounds.getTop(id) : rectangles.get(id).getTop();
+    }
+
+    protected final float right(int id) {
+        return bounds != null ? bounds.getRight(id) : rectangles.get(id).getRight();
+    }
+
+    protected final float bottom(int id) {
+        return bounds != null ? bounds.getBottom(id) : rectangles.get(id).getBottom();
+    }
+
+    /**
+     * Ids of the rectangles touching the box, edges included, in any order.
+     */
+    protected abstract int[] query(float left, float top, float right, float bottom);
+
+    /**
+     * Called when rectangle <code>id</code> is added to an index that wasn't bulk-loaded.
+     */
+    protected abstract void added(int id, T te);
+
+    @Override
+    public void add(T te) {
+        if (inReadingOrder) {
+            throw new UnsupportedOperationException("Can't add to a bulk-loaded index.");
+        }
+        rectangles.add(te);
+        added(rectangles.size() - 1, te);
+    }
+
+    @Override
+    public List<T> contains(Rectangle r) {
+        int[] ids = sortedIds(r);
+        List<T> rv = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            // Rectangle.contains on the coordinates
+            if (left(id) >= r.getLeft() && right(id) <= r.getRight() && top(id) >= r.getTop() && bottom(id) <= r.getBottom()) {
+                rv.add(rectangles.get(id));
+            }
+        }
+
+        if (!inReadingOrder) {
+            ReadingOrder.sort(rv);
+        }
+        return rv;
+    }
+
+    @Override
+    public List<T> intersects(Rectangle r) {
+        int[] ids = sortedIds(r);
+        List<T> rv = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            rv.add(rectangles.get(id));
+        }
+        return rv;
+    }
+
+    private int[] sortedIds(Rectangle r) {
+        int[] ids = query(r.getLeft(), r.getTop(), r.getRight(), r.getBottom());
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        if (bounds == null) {
+            return Rectangle.boundingBoxOf(rectangles);
+        }
+        // Rectangle.boundingBoxOf on the coordinates
+        float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE;
+        float maxx = Float.MIN_VALUE, maxy = Float.MIN_VALUE;
+        for (int id = 0; id < rectangles.size(); id++) {
+            minx = Math.min(left(id), minx);
+            miny = Math.min(top(id), miny);
+            maxx = Math.max(right(id), maxx);
+            maxy = Math.max(bottom(id), maxy);
+        }
+        return new Rectangle(miny, minx, maxx - minx, maxy - miny);
+    }
+
+}
@@ -21,6 +21,9 @@ public class Cell extends RectangularTextContainer<TextChunk> {
 
 	private boolean spanning;
 	private boolean placeholder;
+	// text elements already in reading order, unless they changed since
+	private boolean sorted = false;
+	private int sortedSize;
 
 	@Override
 	public String getText(boolean useLineReturns) {
@@ -28,7 +31,11 @@ public class Cell extends RectangularTextContainer<TextChunk> {
 			return "";
 		}
 		StringBuilder sb = new StringBuilder();
-		this.textElements.sort(Rectangle.ILL_DEFINED_ORDER);
+		if (!sorted || sortedSize != this.textElements.size()) {
+			ReadingOrder.sort(this.textElements);
+			sorted = true;
+			sortedSize = this.textElements.size();
+		}
 		double curTop = this.textElements.get(0).getTop();
 		for (TextChunk tc : this.textElements) {
 			if (useLineReturns && tc.getTop() > curTop) {
@@ -45,6 +52,11 @@ public class Cell extends RectangularTextContainer<TextChunk> {
 		return getText(true);
 	}
 
+	@Override
+	protected void textElementsChanged() {
+		sorted = false;
+	}
+
 	public boolean isSpanning() {
 		return spanning;
 	}
@@ -24,6 +24,10 @@ public final class CohenSutherlandClipping {
         setClip(clipWindow);
     }
 
+    public CohenSutherlandClipping(Rectangle clipWindow) {
+        setClip(clipWindow);
+    }
+
     public void setClip(Rectangle2D clipWindow) {
         xMin = clipWindow.getX();
         xMax = xMin + clipWindow.getWidth();
@@ -31,68 +35,99 @@ public final class CohenSutherlandClipping {
         yMax = yMin + clipWindow.getHeight();
     }
 
+    /**
+     * Okno przycinania z krawędzi prostokąta: lewej, górnej, prawej i dolnej.
+     */
+    public void setClip(Rectangle clipWindow) {
+        xMin = clipWindow.getLeft();
+        xMax = clipWindow.getRight();
+        yMin = clipWindow.getTop();
+        yMax = clipWindow.getBottom();
+    }
+
     public boolean clip(Line2D.Float line) {
-        Point point1 = new Point(line.getX1(), line.getY1());
-        Point point2 = new Point(line.getX2(), line.getY2());
-        Point outsidePoint = new Point(0d, 0d);
+        float[] coordinates = {line.getX1(), line.getY1(), line.getX2(), line.getY2()};
+        if (!clip(coordinates, 0)) return false;
+        line.setLine(coordinates[0], coordinates[1], coordinates[2], coordinates[3]);
+        return true;
+    }
+
+    /**
+     * Przycina wsadowo <code>count</code> linii zapisanych jako x1, y1, x2, y2 w tablicy
+     * <code>lines</code>. Linie przecinające okno są przycinane w miejscu i przesuwane na
+     * początek tablicy, razem z ich identyfikatorami w <code>ids</code>; pozostałe są
+     * pomijane. Zwraca liczbę zachowanych linii.
+     */
+    public int clip(float[] lines, int[] ids, int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (!clip(lines, 4 * i)) continue;
+            if (kept != i) {
+                System.arraycopy(lines, 4 * i, lines, 4 * kept, 4);
+                ids[kept] = ids[i];
+            }
+            kept++;
+        }
+        return kept;
+    }
 
-        boolean lineIsVertical = (point1.x == point2.x);
-        double lineSlope = lineIsVertical ? 0d : (point2.y - point1.y) / (point2.x - point1.x);
+    private boolean clip(float[] lines, int offset) {
+        double x1 = lines[offset], y1 = lines[offset + 1];
+        double x2 = lines[offset + 2], y2 = lines[offset + 3];
+        int region1 = region(x1, y1);
+        int region2 = region(x2, y2);
 
-        while (point1.region != INSIDE || point2.region != INSIDE) {
-            if ((point1.region & point2.region) != 0) return false;
+        boolean lineIsVertical = (x1 == x2);
+        double lineSlope = lineIsVertical ? 0d : (y2 - y1) / (x2 - x1);
 
-            outsidePoint.region = (point1.region == INSIDE) ? point2.region : point1.region;
+        while (region1 != INSIDE || region2 != INSIDE) {
+            if ((region1 & region2) != 0) return false;
 
-            if ((outsidePoint.region & LEFT) != 0) {
-                outsidePoint.x = xMin;
-                outsidePoint.y = delta(outsidePoint.x, point1.x) * lineSlope + point1.y;
+            int outsideRegion = (region1 == INSIDE) ? region2 : region1;
+            double x, y;
+
+            if ((outsideRegion & LEFT) != 0) {
+                x = xMin;
+                y = delta(x, x1) * lineSlope + y1;
             }
-            else if ((outsidePoint.region & RIGHT) != 0) {
-                outsidePoint.x = xMax;
-                outsidePoint.y = delta(outsidePoint.x, point1.x) * lineSlope + point1.y;
+            else if ((outsideRegion & RIGHT) != 0) {
+                x = xMax;
+                y = delta(x, x1) * lineSlope + y1;
             }
-            else if ((outsidePoint.region & BOTTOM) != 0) {
-                outsidePoint.y = yMin;
-                outsidePoint.x = lineIsVertical ? point1.x : delta(outsidePoint.y, point1.y) / lineSlope + point1.x;
+            else if ((outsideRegion & BOTTOM) != 0) {
+                y = yMin;
+                x = lineIsVertical ? x1 : delta(y, y1) / lineSlope + x1;
             }
-            else if ((outsidePoint.region & TOP) != 0) {
-                outsidePoint.y = yMax;
-                outsidePoint.x = lineIsVertical ? point1.x : delta(outsidePoint.y, point1.y) / lineSlope + point1.x;
+            else {
+                y = yMax;
+                x = lineIsVertical ? x1 : delta(y, y1) / lineSlope + x1;
             }
 
-            if (outsidePoint.isInTheSameRegionAs(point1)) {
-                point1.setPositionAndRegion(outsidePoint.x, outsidePoint.y);
+            if (outsideRegion == region1) {
+                x1 = x;
+                y1 = y;
+                region1 = region(x, y);
             } else {
-                point2.setPositionAndRegion(outsidePoint.x, outsidePoint.y);
+                x2 = x;
+                y2 = y;
+                region2 = region(x, y);
             }
         }
-        line.setLine((float)point1.x, (float)point1.y, (float)point2.x, (float)point2.y);
+        lines[offset] = (float) x1;
+        lines[offset + 1] = (float) y1;
+        lines[offset + 2] = (float) x2;
+        lines[offset + 3] = (float) y2;
         return true;
     }
 
-    private static double delta(double value1, double value2) {
-        return (Math.abs(value1 - value2) < MINIMUM_DELTA) ? 0 : (value1 - value2);
+    private int region(double x, double y) {
+        int region = (x < xMin) ? LEFT : (x > xMax) ? RIGHT : INSIDE;
+        if (y < yMin) region |= BOTTOM;
+        else if (y > yMax) region |= TOP;
+        return region;
     }
 
-    class Point {
-        double x, y;
-        int region;
-
-        Point(double x, double y) {
-            setPositionAndRegion(x, y);
-        }
-
-        void setPositionAndRegion(double x, double y) {
-            this.x = x;
-            this.y = y;
-            region = (x < xMin) ? LEFT : (x > xMax) ? RIGHT : INSIDE;
-            if (y < yMin) region |= BOTTOM;
-            else if (y > yMax) region |= TOP;
-        }
-
-        boolean isInTheSameRegionAs(Point otherPoint) {
-            return this.region == otherPoint.region;
-        }
+    private static double delta(double value1, double value2) {
+        return (Math.abs(value1 - value2) < MINIMUM_DELTA) ? 0 : (value1 - value2);
     }
 }
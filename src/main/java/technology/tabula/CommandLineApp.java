@@ -4,8 +4,11 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
@@ -15,7 +18,6 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.DefaultParser;
-import com.tom_roush.pdfbox.pdmodel.PDDocument;
 
 import technology.tabula.detectors.DetectionAlgorithm;
 import technology.tabula.detectors.NurminenDetectionAlgorithm;
@@ -35,6 +37,7 @@ public class CommandLineApp {
 
     private static final int RELATIVE_AREA_CALCULATION_MODE = 0;
     private static final int ABSOLUTE_AREA_CALCULATION_MODE = 1;
+    private static final int PREFETCHED_PAGES = 2;
 
 
     private Appendable defaultOutput;
@@ -156,10 +159,12 @@ public class CommandLineApp {
     }
 
     private void extractFile(File pdfFile, Appendable outFile) throws ParseException {
-        PDDocument pdfDocument = null;
+        ObjectExtractor extractor = null;
+        Iterator<Page> pageIterator = null;
         try {
-            pdfDocument = this.password == null ?  PDDocument.load(pdfFile) :  PDDocument.load(pdfFile,password);
-            PageIterator pageIterator = getPageIterator(pdfDocument);
+            // map the file instead of loading it into the heap, large documents spill to scratch files
+            extractor = ObjectExtractor.open(pdfFile, this.password);
+            pageIterator = getPageIterator(extractor);
             List<Table> tables = new ArrayList<>();
 
             while (pageIterator.hasNext()) {
@@ -188,10 +193,20 @@ public class CommandLineApp {
             writeTables(tables, outFile);
         } catch (IOException e) {
             throw new ParseException(e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw new ParseException(e.getCause().getMessage());
         } finally {
             try {
-                if (pdfDocument != null) {
-                    pdfDocument.close();
+                // the prefetching worker must let go of the document before it is closed
+                if (pageIterator instanceof Closeable) {
+                    ((Closeable) pageIterator).close();
+                }
+            } catch (IOException e) {
+                System.out.println("Error in closing page iterator" + e);
+            }
+            try {
+                if (extractor != null) {
+                    extractor.close();
                 }
             } catch (IOException e) {
                 System.out.println("Error in closing pdf document" + e);
@@ -199,11 +214,18 @@ public class CommandLineApp {
         }
     }
 
-    private PageIterator getPageIterator(PDDocument pdfDocument) throws IOException {
-        ObjectExtractor extractor = new ObjectExtractor(pdfDocument);
+    private Iterator<Page> getPageIterator(ObjectExtractor extractor) throws IOException {
+        if (tableExtractor.guess) {
+            // guessing only needs the rulings of pages without tables, their text is never read.
+            // Lazy pages read the document on first use, so they are not extracted in the background
+            return (pages == null) ?
+                    extractor.extractLazily() :
+                    extractor.extractLazily(pages);
+        }
+        // parse the next pages while the tables of the current one are extracted
         return (pages == null) ?
-                extractor.extract() :
-                extractor.extract(pages);
+                extractor.extractPrefetching(PREFETCHED_PAGES) :
+                extractor.extractPrefetching(pages, PREFETCHED_PAGES);
     }
 
     // CommandLine parsing methods
@@ -0,0 +1,69 @@
+package technology.tabula;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Document-scoped cache of the metrics TextStripper derives from a font, keyed by the
+ * font's COS dictionary so that every page referencing the same font object shares them.
+ *
+ * The cache holds at most {@link #MAX_FONTS} fonts, evicting the least recently used one,
+ * and its values are softly referenced so they can be dropped under memory pressure.
+ * The decoded PDFont objects themselves are shared by the document's ResourceCache.
+ */
+class FontMetricsCache {
+
+    static final int MAX_FONTS = 256;
+
+    // One cache per open document, released together with the document
+    private static final Map<PDDocument, FontMetricsCache> CACHES = new WeakHashMap<>();
+
+    private final Map<COSDictionary, SoftReference<FontMetrics>> metrics =
+            new LinkedHashMap<COSDictionary, SoftReference<FontMetrics>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<COSDictionary, SoftReference<FontMetrics>> eldest) {
+                    return size() > MAX_FONTS;
+                }
+            };
+
+    static FontMetricsCache forDocument(PDDocument document) {
+        synchronized (CACHES) {
+            FontMetricsCache cache = CACHES.get(document);
+            if (cache == null) {
+                cache = new FontMetricsCache();
+                CACHES.put(document, cache);
+            }
+            return cache;
+        }
+    }
+
+    synchronized FontMetrics get(COSDictionary font) {
+        SoftReference<FontMetrics> reference = metrics.get(font);
+        if (reference == null) {
+            return null;
+        }
+        FontMetrics fontMetrics = reference.get();
+        if (fontMetrics == null) {
+            metrics.remove(font);
+        }
+        return fontMetrics;
+    }
+
+    synchronized void put(COSDictionary font, FontMetrics fontMetrics) {
+        metrics.put(font, new SoftReference<>(fontMetrics));
+    }
+
+    static final class FontMetrics {
+        // Glyph height in text space, see TextStripper.computeFontHeight
+        final float height;
+
+        FontMetrics(float height) {
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package technology.tabula;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * Document-scoped table interning the unicode text of glyphs and their fonts to small
+ * integer ids. Every glyph of the document with the same text then shares one String,
+ * and PageTextBuffer stores two ints per glyph instead of a String and a font reference.
+ *
+ * Fonts are identified by their COS dictionary, so a font decoded again after the
+ * document's resource cache let it go keeps its id.
+ */
+public class GlyphTable {
+
+    // One table per open document, released together with the document
+    private static final Map<PDDocument, GlyphTable> TABLES = new WeakHashMap<>();
+
+    private final Map<String, Integer> textIds = new HashMap<>();
+    private final List<String> texts = new ArrayList<>();
+    // ids of the texts with characters that aren't LTR or neutral
+    private final BitSet bidiTexts = new BitSet();
+    private final Map<COSDictionary, Integer> fontIds = new HashMap<>();
+    private final List<PDFont> fonts = new ArrayList<>();
+
+    static GlyphTable forDocument(PDDocument document) {
+        synchronized (TABLES) {
+            GlyphTable table = TABLES.get(document);
+            if (table == null) {
+                table = new GlyphTable();
+                TABLES.put(document, table);
+            }
+            return table;
+        }
+    }
+
+    public synchronized int internText(String text) {
+        Integer id = textIds.get(text);
+        if (id == null) {
+            id = texts.size();
+            texts.add(text);
+            textIds.put(text, id);
+            if (!TextChunk.isLeftToRight(text)) {
+                bidiTexts.set(id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Whether text <code>id</code> only has LTR or neutral characters, see
+     * {@link TextChunk#isLeftToRight(String)}.
+     */
+    public synchronized boolean isLeftToRight(int id) {
+        return !bidiTexts.get(id);
+    }
+
+    public synchronized String getText(int id) {
+        return texts.get(id);
+    }
+
+    public synchronized int internFont(PDFont font) {
+        if (font == null) {
+            return -1;
+        }
+        Integer id = fontIds.get(font.getCOSObject());
+        if (id == null) {
+            id = fonts.size();
+            fonts.add(font);
+            fontIds.put(font.getCOSObject(), id);
+        }
+        return id;
+    }
+
+    public synchronized PDFont getFont(int id) {
+        return id < 0 ? null : fonts.get(id);
+    }
+
+    public synchronized int textCount() {
+        return texts.size();
+    }
+
+    public synchronized int fontCount() {
+        return fonts.size();
+    }
+}
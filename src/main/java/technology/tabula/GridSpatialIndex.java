@@ -0,0 +1,175 @@
+package technology.tabula;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spatial index bucketing rectangles into a uniform grid over their bounding box. Glyphs
+ * are small and of similar size, so with cells about twice the size of an average
+ * rectangle most rectangles fall into one to four cells and a query only visits the cells
+ * it overlaps.
+ *
+ * The grid is built on the first query and built again on the first query after
+ * rectangles were added.
+ */
+class GridSpatialIndex<T extends Rectangle> extends AbstractRectangleSpatialIndex<T> {
+
+    // cell side as a multiple of the average rectangle side
+    private static final float CELL_SIZE_FACTOR = 2f;
+    // upper bound on the number of cells per rectangle, keeps sparse layouts small
+    private static final int MAX_CELLS_PER_RECTANGLE = 4;
+
+    private Grid grid;
+
+    GridSpatialIndex(List<T> inReadingOrder) {
+        super(inReadingOrder);
+    }
+
+    @Override
+    protected void added(int id, T te) {
+        synchronized (this) {
+            grid = null;
+        }
+    }
+
+    private synchronized Grid grid() {
+        if (grid == null) {
+            grid = new Grid(this);
+        }
+        return grid;
+    }
+
+    @Override
+    protected int[] query(float left, float top, float right, float bottom) {
+        return grid().query(left, top, right, bottom);
+    }
+
+    /**
+     * Immutable grid. The ids in each cell are stored contiguously: the ids of cell c are
+     * <code>cellIds[cellStart[c]]</code> to <code>cellIds[cellStart[c + 1] - 1]</code>.
+     */
+    private static final class Grid {
+
+        private final float[] lefts, tops, rights, bottoms;
+        private final float originX, originY, cellSize;
+        private final int columns, rows;
+        private final int[] cellStart;
+        private final int[] cellIds;
+
+        Grid(GridSpatialIndex<?> index) {
+            int count = index.rectangles.size();
+            lefts = new float[count];
+            tops = new float[count];
+            rights = new float[count];
+            bottoms = new float[count];
+
+            float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+            float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+            double sides = 0;
+            for (int i = 0; i < count; i++) {
+                lefts[i] = index.left(i);
+                tops[i] = index.top(i);
+                rights[i] = index.right(i);
+                bottoms[i] = index.bottom(i);
+                x0 = Math.min(x0, lefts[i]);
+                y0 = Math.min(y0, tops[i]);
+                x1 = Math.max(x1, rights[i]);
+                y1 = Math.max(y1, bottoms[i]);
+                sides += (rights[i] - lefts[i]) + (bottoms[i] - tops[i]);
+            }
+
+            if (count == 0) {
+                originX = originY = 0;
+                cellSize = 1;
+                columns = rows = 0;
+                cellStart = new int[1];
+                cellIds = new int[0];
+                return;
+            }
+
+            float spanX = x1 - x0, spanY = y1 - y0;
+            float size = (float) (sides / (2 * count)) * CELL_SIZE_FACTOR;
+            // grow the cells until there are at most a few per rectangle
+            float minSize = (float) Math.sqrt((double) spanX * spanY / ((double) MAX_CELLS_PER_RECTANGLE * count));
+            size = Math.max(size, minSize);
+            if (!(size > 0)) {
+                size = Math.max(1, Math.max(spanX, spanY));
+            }
+
+            originX = x0;
+            originY = y0;
+            cellSize = size;
+            columns = Math.min(Math.max(1, (int) (spanX / size) + 1), 1 << 15);
+            rows = Math.min(Math.max(1, (int) (spanY / size) + 1), 1 << 15);
+
+            // count the rectangles of each cell, then place them
+            cellStart = new int[columns * rows + 1];
+            for (int i = 0; i < count; i++) {
+                int c0 = column(lefts[i]), c1 = column(rights[i]);
+                int r0 = row(tops[i]), r1 = row(bottoms[i]);
+                for (int row = r0; row <= r1; row++) {
+                    for (int column = c0; column <= c1; column++) {
+                        cellStart[row * columns + column + 1]++;
+                    }
+                }
+            }
+            for (int c = 0; c < columns * rows; c++) {
+                cellStart[c + 1] += cellStart[c];
+            }
+
+            cellIds = new int[cellStart[columns * rows]];
+            int[] fill = Arrays.copyOf(cellStart, columns * rows);
+            for (int i = 0; i < count; i++) {
+                int c0 = column(lefts[i]), c1 = column(rights[i]);
+                int r0 = row(tops[i]), r1 = row(bottoms[i]);
+                for (int row = r0; row <= r1; row++) {
+                    for (int column = c0; column <= c1; column++) {
+                        cellIds[fill[row * columns + column]++] = i;
+                    }
+                }
+            }
+        }
+
+        private int column(float x) {
+            return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - originX) / cellSize)));
+        }
+
+        private int row(float y) {
+            return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - originY) / cellSize)));
+        }
+
+        int[] query(float left, float top, float right, float bottom) {
+            if (columns == 0) {
+                return new int[0];
+            }
+
+            int c0 = column(left), c1 = column(right);
+            int r0 = row(top), r1 = row(bottom);
+
+            int[] result = new int[16];
+            int found = 0;
+            for (int row = r0; row <= r1; row++) {
+                for (int column = c0; column <= c1; column++) {
+                    int cell = row * columns + column;
+                    for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+                        int id = cellIds[j];
+                        if (lefts[id] > right || rights[id] < left || tops[id] > bottom || bottoms[id] < top) {
+                            continue;
+                        }
+                        // a rectangle spanning several cells is reported from the first cell
+                        // it shares with the query only
+                        if (column != Math.max(c0, column(lefts[id])) || row != Math.max(r0, row(tops[id]))) {
+                            continue;
+                        }
+                        if (found == result.length) {
+                            result = Arrays.copyOf(result, result.length * 2);
+                        }
+                        result[found++] = id;
+                    }
+                }
+            }
+            return Arrays.copyOf(result, found);
+        }
+    }
+
+}
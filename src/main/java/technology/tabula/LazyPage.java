@@ -0,0 +1,40 @@
+package technology.tabula;
+
+import java.io.IOException;
+
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+
+/**
+ * Page whose text layer (text elements, spatial index, minimum character size) and
+ * ruling layer are read from the underlying PDPage the first time they are used.
+ *
+ * Loading the text also collects the rulings, since both come out of the same pass over
+ * the content stream; loading the rulings alone skips the text extraction, following the
+ * text operators only as far as needed to learn the direction of the text.
+ */
+class LazyPage extends Page {
+
+    LazyPage(Rectangle area, int rotation, int number, PDPage pdPage, PDDocument doc) {
+        super(area, rotation, number, pdPage, doc);
+    }
+
+    @Override
+    protected void loadText() throws IOException {
+        ObjectExtractorStreamEngine streamEngine = isRulingsLoaded() ? null : new ObjectExtractorStreamEngine(getPDPage());
+        TextStripper textStripper = new TextStripper(getPDDoc(), getPageNumber(), streamEngine);
+        textStripper.process();
+
+        setTextLayer(textStripper.getTextBuffer(), textStripper.getMinCharWidth(), textStripper.getMinCharHeight());
+        if (streamEngine != null) {
+            setRulingLayer(streamEngine.getRulings());
+        }
+    }
+
+    @Override
+    protected void loadRulings() throws IOException {
+        ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(getPDPage());
+        streamEngine.extractRulings();
+        setRulingLayer(streamEngine.getRulings());
+    }
+}
@@ -0,0 +1,146 @@
+package technology.tabula;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.tom_roush.pdfbox.io.RandomAccessRead;
+
+/**
+ * Read-only view of a file through memory mappings, so that the parser reads the document
+ * on demand from the page cache instead of copying it into the heap.
+ *
+ * Files larger than a single mapping are mapped in consecutive chunks. The mappings are
+ * released by the garbage collector once the view is closed and no longer referenced.
+ */
+class MappedFileRandomAccessRead implements RandomAccessRead {
+
+    private static final int CHUNK_SIZE = 1 << 28;
+
+    private ByteBuffer[] chunks;
+    private final long length;
+    private long position = 0;
+
+    MappedFileRandomAccessRead(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            length = channel.size();
+            int chunkCount = (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long offset = (long) i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, length - offset));
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return -1;
+        }
+        int b = chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE)) & 0xff;
+        position++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int len) throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return -1;
+        }
+        int total = (int) Math.min(len, length - position);
+        int done = 0;
+        while (done < total) {
+            ByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)].duplicate();
+            int chunkOffset = (int) (position % CHUNK_SIZE);
+            int count = Math.min(total - done, chunk.capacity() - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.get(b, offset + done, count);
+            done += count;
+            position += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        checkClosed();
+        if (position < 0) {
+            throw new IOException("Invalid position " + position);
+        }
+        this.position = position;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return chunks == null;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int result = read();
+        if (result != -1) {
+            rewind(1);
+        }
+        return result;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(getPosition() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int len) throws IOException {
+        byte[] b = new byte[len];
+        if (len > 0 && read(b, 0, len) < len) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        return peek() == -1;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(Math.max(length - position, 0), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        chunks = null;
+    }
+
+    private void checkClosed() throws IOException {
+        if (chunks == null) {
+            throw new IOException("RandomAccessRead already closed");
+        }
+    }
+}
@@ -1,38 +1,148 @@
 package technology.tabula;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import com.tom_roush.pdfbox.io.IOUtils;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.io.ScratchFile;
+import com.tom_roush.pdfbox.pdfparser.PDFParser;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
 import com.tom_roush.pdfbox.pdmodel.PDPage;
 
 public class ObjectExtractor implements java.io.Closeable {
 
+    // Main memory used by a mapped document before the parser spills to a scratch file
+    private static final long DEFAULT_MAIN_MEMORY_BYTES = 64L * 1024 * 1024;
+    // How long a finished extractParallel call waits for its workers before reusing their handles
+    private static final long WORKER_TERMINATION_SECONDS = 10;
+
     private final PDDocument pdfDocument;
 
+    // Source of the document, needed to open one handle per worker in extractParallel:
+    // either the bytes of the file, or a file opened through memory mappings
+    private final byte[] documentBytes;
+    private final File documentFile;
+    private final MemoryUsageSetting memoryUsage;
+    private final String password;
+    // every handle opened for the workers, closed in close(); the idle ones are reused by
+    // the next extractParallel call on as many threads, as they hold that share of the
+    // memory budget. All three are guarded by workerDocuments.
+    private final List<PDDocument> workerDocuments = Collections.synchronizedList(new ArrayList<PDDocument>());
+    private final Deque<PDDocument> idleWorkerDocuments = new ArrayDeque<>();
+    private int idleWorkerPartitions = 0;
+
     public ObjectExtractor(PDDocument pdfDocument) {
         this.pdfDocument = pdfDocument;
+        this.documentBytes = null;
+        this.documentFile = null;
+        this.memoryUsage = null;
+        this.password = null;
+    }
+
+    /**
+     * Creates an extractor over the bytes of a PDF file. Unlike {@link #ObjectExtractor(PDDocument)},
+     * an extractor created this way can extract pages in parallel, see {@link #extractParallel(Iterable, int)}.
+     *
+     * @param documentBytes contents of the PDF file, not copied and not to be modified afterwards
+     * @param password password of the document, or null
+     */
+    public ObjectExtractor(byte[] documentBytes, String password) throws IOException {
+        this.documentBytes = documentBytes;
+        this.documentFile = null;
+        this.memoryUsage = null;
+        this.password = password;
+        this.pdfDocument = openDocument(1);
+    }
+
+    private ObjectExtractor(File documentFile, String password, MemoryUsageSetting memoryUsage) throws IOException {
+        this.documentBytes = null;
+        this.documentFile = documentFile;
+        this.memoryUsage = memoryUsage;
+        this.password = password;
+        this.pdfDocument = openDocument(1);
+    }
+
+    /**
+     * Opens a PDF file through memory mappings instead of reading it into the heap. Objects
+     * and page streams are read on demand; the parser keeps at most the main memory allowed by
+     * <code>memoryUsage</code> and spills the rest to scratch files. The extractor owns the
+     * document and closes it in {@link #close()}. It can also extract pages in parallel, each
+     * worker mapping the same file and getting an equal share of the budget.
+     *
+     * @param pdfFile the PDF file
+     * @param password password of the document, or null
+     * @param memoryUsage main memory and scratch file budget of the parser
+     */
+    public static ObjectExtractor open(File pdfFile, String password, MemoryUsageSetting memoryUsage) throws IOException {
+        return new ObjectExtractor(pdfFile, password, memoryUsage);
+    }
+
+    /**
+     * Same as {@link #open(File, String, MemoryUsageSetting)}, with a budget of 64 MB of main
+     * memory backed by an unrestricted scratch file in the default temporary directory.
+     */
+    public static ObjectExtractor open(File pdfFile, String password) throws IOException {
+        return open(pdfFile, password, MemoryUsageSetting.setupMixed(DEFAULT_MAIN_MEMORY_BYTES));
     }
 
     protected Page extractPage(Integer pageNumber) throws IOException {
+        return extractPage(pdfDocument, pageNumber);
+    }
+
+    private static Page extractPage(PDDocument pdfDocument, int pageNumber) throws IOException {
         if (pageNumber > pdfDocument.getNumberOfPages() || pageNumber < 1) {
             throw new java.lang.IndexOutOfBoundsException("Page number does not exist.");
         }
 
         PDPage page = pdfDocument.getPage(pageNumber - 1);
 
-        // Utwórz silnik do ekstrakcji obiektów graficznych
+        // Text and rulings are collected in the same pass over the page's content stream:
+        // the text stripper forwards path operators to the stream engine
         ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(page);
-        streamEngine.extractRulings(); // Wywołanie ekstrakcji linii
-
-        // Uruchom ekstraktor tekstu
-        TextStripper textStripper = new TextStripper(pdfDocument, pageNumber);
+        TextStripper textStripper = new TextStripper(pdfDocument, pageNumber, streamEngine);
         textStripper.process();
 
-        // Sortowanie tekstu
-        List<TextElement> textElements = textStripper.getTextElements();
-        Utils.sort(textElements, Rectangle.ILL_DEFINED_ORDER);
+        // Text elements are created and sorted by the page when its text is first queried
+        // ✅ Poprawione tworzenie obiektu `Page` z właściwymi argumentami
+        return new Page(
+                pageArea(page),
+                page.getRotation(),
+                pageNumber,
+                page,
+                pdfDocument,
+                textStripper.getTextBuffer(),
+                streamEngine.getRulings(),
+                textStripper.getMinCharWidth(),
+                textStripper.getMinCharHeight()
+        );
+    }
+
+    /**
+     * Creates a page whose text and rulings are extracted on first use. Callers that only
+     * look at the rulings of a page (or only at its text) skip the rest of the work.
+     */
+    protected Page extractLazyPage(Integer pageNumber) {
+        if (pageNumber > pdfDocument.getNumberOfPages() || pageNumber < 1) {
+            throw new java.lang.IndexOutOfBoundsException("Page number does not exist.");
+        }
 
-        // Ustal wymiary strony i rotację
+        PDPage page = pdfDocument.getPage(pageNumber - 1);
+        return new LazyPage(pageArea(page), page.getRotation(), pageNumber, page, pdfDocument);
+    }
+
+    // Ustal wymiary strony i rotację
+    private static Rectangle pageArea(PDPage page) {
         float width, height;
         int rotation = page.getRotation();
         if (Math.abs(rotation) == 90 || Math.abs(rotation) == 270) {
@@ -42,21 +152,7 @@ public class ObjectExtractor implements java.io.Closeable {
             width = page.getCropBox().getWidth();
             height = page.getCropBox().getHeight();
         }
-
-        // ✅ Poprawione tworzenie obiektu `Page` z właściwymi argumentami
-        Rectangle pageRectangle = new Rectangle(0, 0, width, height);
-        return new Page(
-                pageRectangle,
-                rotation,
-                pageNumber,
-                page,
-                pdfDocument,
-                textElements,
-                streamEngine.getRulings(),
-                textStripper.getMinCharWidth(),
-                textStripper.getMinCharHeight(),
-                textStripper.getSpatialIndex()
-        );
+        return new Rectangle(0, 0, width, height);
     }
 
     public PageIterator extract(Iterable<Integer> pages) {
@@ -71,7 +167,236 @@ public class ObjectExtractor implements java.io.Closeable {
         return extract(Utils.range(pageNumber, pageNumber + 1)).next();
     }
 
+    /**
+     * Like {@link #extract(Iterable)}, but up to <code>lookAhead</code> pages are extracted in the
+     * background while the caller works on the current one. The iterator must be closed before
+     * the document is.
+     */
+    public PrefetchingPageIterator extractPrefetching(Iterable<Integer> pages, int lookAhead) {
+        return new PrefetchingPageIterator(this, pages, lookAhead);
+    }
+
+    public PrefetchingPageIterator extractPrefetching(int lookAhead) {
+        return extractPrefetching(Utils.range(1, pdfDocument.getNumberOfPages() + 1), lookAhead);
+    }
+
+    /**
+     * Like {@link #extract(Iterable)}, but the returned pages extract their text and rulings
+     * on first use, see {@link #extractLazyPage(Integer)}.
+     */
+    public PageIterator extractLazily(Iterable<Integer> pages) {
+        return new PageIterator(this, pages, true);
+    }
+
+    public PageIterator extractLazily() {
+        return extractLazily(Utils.range(1, pdfDocument.getNumberOfPages() + 1));
+    }
+
+    /**
+     * Extracts the given pages on a pool of worker threads and returns them in the order of
+     * <code>pages</code>.
+     *
+     * PDDocument is not thread-safe, so every worker uses its own handle over the bytes or
+     * the mapped file the extractor was created from, opened with an equal share of the
+     * memory budget. Those handles back the returned pages. Once a call returns, the next
+     * call reuses its handles instead of opening new ones, or closes them first when it
+     * runs on a different number of threads, so the handles never hold more than one
+     * budget. The pages returned by a call can therefore use their PDDocument
+     * ({@link Page#getPDDoc()}, {@link Page#getPDPage()}) only until the next
+     * extractParallel call starts; their text and rulings stay available. The handles still
+     * open are closed by {@link #close()}. Extractors created from a PDDocument extract the
+     * pages sequentially.
+     *
+     * @param pages page numbers, 1-based
+     * @param threads number of worker threads, at least 1
+     */
+    public List<Page> extractParallel(Iterable<Integer> pages, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+
+        List<Page> result = new ArrayList<>();
+        if ((documentBytes == null && documentFile == null) || threads == 1) {
+            for (Integer pageNumber : pages) {
+                result.add(extractPage(pageNumber));
+            }
+            return result;
+        }
+
+        retireIdleWorkerDocuments(threads);
+        final int workers = threads;
+        final ThreadLocal<PDDocument> threadDocument = new ThreadLocal<>();
+        final List<PDDocument> callDocuments = Collections.synchronizedList(new ArrayList<PDDocument>());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Page>> futures = new ArrayList<>();
+            for (final Integer pageNumber : pages) {
+                futures.add(executor.submit(new Callable<Page>() {
+                    @Override
+                    public Page call() throws IOException {
+                        PDDocument document = threadDocument.get();
+                        if (document == null) {
+                            document = takeWorkerDocument(workers);
+                            callDocuments.add(document);
+                            threadDocument.set(document);
+                        }
+                        return extractPage(document, pageNumber);
+                    }
+                }));
+            }
+
+            for (Future<Page> future : futures) {
+                result.add(getPage(future));
+            }
+        } finally {
+            executor.shutdownNow();
+            releaseWorkerDocuments(executor, callDocuments, workers);
+        }
+        return result;
+    }
+
+    // Closes the idle handles unless they hold the share of the budget a call on this
+    // many threads gives each handle
+    private void retireIdleWorkerDocuments(int handles) throws IOException {
+        List<PDDocument> retired;
+        synchronized (workerDocuments) {
+            if (idleWorkerPartitions == handles) {
+                return;
+            }
+            retired = new ArrayList<>(idleWorkerDocuments);
+            idleWorkerDocuments.clear();
+            workerDocuments.removeAll(retired);
+            idleWorkerPartitions = handles;
+        }
+        IOException failure = closeAll(retired, null);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // an idle worker handle, or a new one
+    private PDDocument takeWorkerDocument(int handles) throws IOException {
+        synchronized (workerDocuments) {
+            if (idleWorkerPartitions == handles) {
+                PDDocument document = idleWorkerDocuments.poll();
+                if (document != null) {
+                    return document;
+                }
+            }
+        }
+        PDDocument document = openDocument(handles);
+        workerDocuments.add(document);
+        return document;
+    }
+
+    // The handles of a call become idle once none of its tasks can still be using them.
+    // If a call on another number of threads started meanwhile they are closed instead,
+    // quietly so a failure doesn't hide the outcome of the call. Handles of tasks that
+    // don't stop in time stay out of the pool until close().
+    private void releaseWorkerDocuments(ExecutorService executor, List<PDDocument> documents, int handles) {
+        boolean terminated;
+        try {
+            terminated = executor.awaitTermination(WORKER_TERMINATION_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        if (!terminated) {
+            return;
+        }
+        synchronized (workerDocuments) {
+            if (idleWorkerPartitions == handles) {
+                idleWorkerDocuments.addAll(documents);
+                return;
+            }
+            workerDocuments.removeAll(documents);
+        }
+        for (PDDocument document : documents) {
+            IOUtils.closeQuietly(document);
+        }
+    }
+
+    /**
+     * Opens a handle on the source of the extractor, one of <code>handles</code> opened
+     * at the same time.
+     */
+    private PDDocument openDocument(int handles) throws IOException {
+        if (documentFile != null) {
+            return loadMapped(documentFile, password,
+                    handles == 1 ? memoryUsage : memoryUsage.getPartitionedCopy(handles));
+        }
+        return password == null ? PDDocument.load(documentBytes) : PDDocument.load(documentBytes, password);
+    }
+
+    private static PDDocument loadMapped(File pdfFile, String password, MemoryUsageSetting memoryUsage) throws IOException {
+        MappedFileRandomAccessRead source = new MappedFileRandomAccessRead(pdfFile);
+        ScratchFile scratchFile = null;
+        try {
+            scratchFile = new ScratchFile(memoryUsage);
+            // the document closes both the source and the scratch file
+            PDFParser parser = new PDFParser(source, password == null ? "" : password, null, null, scratchFile);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(scratchFile);
+            source.close();
+            throw e;
+        }
+    }
+
+    private static Page getPage(Future<Page> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting pages", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     public void close() throws IOException {
-        pdfDocument.close();
+        IOException failure = null;
+        try {
+            pdfDocument.close();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            // the worker handles are closed even when closing the main document fails
+            synchronized (workerDocuments) {
+                failure = closeAll(workerDocuments, failure);
+                workerDocuments.clear();
+                idleWorkerDocuments.clear();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Closes every document, returning the first failure with the later ones suppressed
+    private static IOException closeAll(Iterable<PDDocument> documents, IOException failure) {
+        for (PDDocument document : documents) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure;
     }
 }
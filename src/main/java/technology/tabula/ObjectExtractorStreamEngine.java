@@ -1,68 +1,226 @@
 package technology.tabula;
 
+import com.tom_roush.pdfbox.contentstream.PDFStreamEngine;
+import com.tom_roush.pdfbox.contentstream.operator.DrawObject;
+import com.tom_roush.pdfbox.contentstream.operator.Operator;
+import com.tom_roush.pdfbox.contentstream.operator.OperatorName;
+import com.tom_roush.pdfbox.contentstream.operator.OperatorProcessor;
+import com.tom_roush.pdfbox.contentstream.operator.state.Concatenate;
+import com.tom_roush.pdfbox.contentstream.operator.state.Restore;
+import com.tom_roush.pdfbox.contentstream.operator.state.Save;
+import com.tom_roush.pdfbox.contentstream.operator.state.SetMatrix;
+import com.tom_roush.pdfbox.contentstream.operator.text.BeginText;
+import com.tom_roush.pdfbox.contentstream.operator.text.EndText;
+import com.tom_roush.pdfbox.contentstream.operator.text.MoveText;
+import com.tom_roush.pdfbox.contentstream.operator.text.MoveTextSetLeading;
+import com.tom_roush.pdfbox.contentstream.operator.text.NextLine;
+import com.tom_roush.pdfbox.contentstream.operator.text.SetCharSpacing;
+import com.tom_roush.pdfbox.contentstream.operator.text.SetFontAndSize;
+import com.tom_roush.pdfbox.contentstream.operator.text.SetTextHorizontalScaling;
+import com.tom_roush.pdfbox.contentstream.operator.text.SetTextLeading;
+import com.tom_roush.pdfbox.contentstream.operator.text.SetTextRise;
+import com.tom_roush.pdfbox.contentstream.operator.text.SetWordSpacing;
+import com.tom_roush.pdfbox.contentstream.operator.text.ShowText;
+import com.tom_roush.pdfbox.contentstream.operator.text.ShowTextAdjusted;
+import com.tom_roush.pdfbox.contentstream.operator.text.ShowTextLine;
+import com.tom_roush.pdfbox.contentstream.operator.text.ShowTextLineAndSpace;
+import com.tom_roush.pdfbox.cos.COSBase;
 import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSNumber;
 import com.tom_roush.pdfbox.pdmodel.PDPage;
 import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
 import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImage;
+import com.tom_roush.pdfbox.util.Matrix;
+import com.tom_roush.pdfbox.util.Vector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
-class ObjectExtractorStreamEngine {
+/**
+ * Graphics stream engine that turns the straight line segments of stroked and filled
+ * paths into {@link Ruling}s in page space.
+ *
+ * Page space is the space TextStripper places the glyphs in, which depends on the
+ * direction of the page's text (see {@link #getPageTransform()}), so the segments are
+ * kept in device space until the page has been walked.
+ *
+ * It can walk a page on its own ({@link #extractRulings()}) or collect paths while another
+ * engine walks the page ({@link #registerPathOperators(PDFStreamEngine)}). Path segments
+ * are kept in a reusable primitive buffer, so the only objects created per path are the
+ * rulings that survive the filters.
+ */
+class ObjectExtractorStreamEngine extends PDFStreamEngine {
 
     protected List<Ruling> rulings;
-    private float[] pageTransform;
     private boolean extractRulingLines = true;
     private Logger logger;
-    private List<Point2D> currentPath = new ArrayList<>();
     private PDPage page;
 
+    // Device space segments of the current path, four floats (x1, y1, x2, y2) each
+    private float[] pathSegments = new float[64];
+    private int pathSegmentCount = 0;
+    private float currentX, currentY, subpathStartX, subpathStartY;
+    private boolean hasCurrentPoint = false;
+    private boolean currentPathHasCurves = false;
+
+    // Device space segments of the painted paths that reach into the crop box. They are
+    // turned into rulings once the direction of the page's text is known.
+    private float[] rulingSegments = new float[64];
+    private int rulingSegmentCount = 0;
+    // Glyphs shown on the page, by direction: 0, 90, 180 and 270 degrees
+    private final int[] glyphDirections = new int[4];
+
+    private final PDRectangle cropBox;
+
     private static final float RULING_MINIMUM_LENGTH = 0.01f;
 
+    private static final String[] PATH_OPERATORS = {
+            OperatorName.MOVE_TO, OperatorName.LINE_TO, OperatorName.CURVE_TO,
+            OperatorName.CURVE_TO_REPLICATE_INITIAL_POINT, OperatorName.CURVE_TO_REPLICATE_FINAL_POINT,
+            OperatorName.APPEND_RECT, OperatorName.CLOSE_PATH, OperatorName.ENDPATH,
+            OperatorName.STROKE_PATH, OperatorName.CLOSE_AND_STROKE,
+            OperatorName.FILL_NON_ZERO, OperatorName.LEGACY_FILL_NON_ZERO, OperatorName.FILL_EVEN_ODD,
+            OperatorName.FILL_NON_ZERO_AND_STROKE, OperatorName.FILL_EVEN_ODD_AND_STROKE,
+            OperatorName.CLOSE_FILL_NON_ZERO_AND_STROKE, OperatorName.CLOSE_FILL_EVEN_ODD_AND_STROKE
+    };
+
     protected ObjectExtractorStreamEngine(PDPage page) {
         this.page = page;
         logger = LoggerFactory.getLogger(ObjectExtractorStreamEngine.class);
-        rulings = new ArrayList<>();
+        cropBox = page.getCropBox();
+
+        // Operators needed to walk the page on our own: graphics state and form XObjects
+        addOperator(new Save());
+        addOperator(new Restore());
+        addOperator(new Concatenate());
+        addOperator(new DrawObject());
+        registerPathOperators(this);
+
+        // Text operators, only followed to learn the direction of the glyphs (see showGlyph)
+        addOperator(new BeginText());
+        addOperator(new EndText());
+        addOperator(new SetFontAndSize());
+        addOperator(new SetMatrix());
+        addOperator(new MoveText());
+        addOperator(new MoveTextSetLeading());
+        addOperator(new NextLine());
+        addOperator(new SetTextLeading());
+        addOperator(new SetCharSpacing());
+        addOperator(new SetWordSpacing());
+        addOperator(new SetTextHorizontalScaling());
+        addOperator(new SetTextRise());
+        addOperator(new ShowText());
+        addOperator(new ShowTextAdjusted());
+        addOperator(new ShowTextLine());
+        addOperator(new ShowTextLineAndSpace());
+    }
 
-        // Oblicz transformację strony:
-        PDRectangle pageCropBox = page.getCropBox();
-        int rotationAngleInDegrees = page.getRotation();
+    /**
+     * The transform from device space to the space of the page's glyphs.
+     *
+     * TextStripper places a glyph with PDFBox's direction adjusted coordinates, which turn
+     * the page so that the glyph reads left to right, measured from the top left corner of
+     * the crop box. Rulings go through the same turn for the direction most of the page's
+     * glyphs have, so they line up with the text; pages without text follow their
+     * rotation, which is the direction of upright text on them.
+     *
+     * The transform is laid out as {m00, m10, m01, m11, m02, m12}.
+     */
+    public float[] getPageTransform() {
+        float width = cropBox.getWidth();
+        float height = cropBox.getHeight();
+        float[] transform;
+        switch (getTextDirection()) {
+            case 90:
+                // (x, y) -> (y, x)
+                transform = new float[]{0, 1, 1, 0, 0, 0};
+                break;
+            case 180:
+                // (x, y) -> (width - x, y)
+                transform = new float[]{-1, 0, 0, 1, width, 0};
+                break;
+            case 270:
+                // (x, y) -> (height - y, width - x)
+                transform = new float[]{0, -1, -1, 0, height, width};
+                break;
+            default:
+                // (x, y) -> (x, height - y)
+                transform = new float[]{1, 0, 0, -1, 0, height};
+                break;
+        }
+        // measured from the lower left corner of the crop box, which comes first
+        concatenateTranslation(transform, -cropBox.getLowerLeftX(), -cropBox.getLowerLeftY());
+        return transform;
+    }
 
-        pageTransform = new float[]{1, 0, 0, 1, 0, 0};
+    // Concatenates a translation onto transform the way AffineTransform.concatenate does:
+    // the translation is applied first
+    private static void concatenateTranslation(float[] transform, float dx, float dy) {
+        transform[4] += transform[0] * dx + transform[2] * dy;
+        transform[5] += transform[1] * dx + transform[3] * dy;
+    }
 
-        if (Math.abs(rotationAngleInDegrees) == 90 || Math.abs(rotationAngleInDegrees) == 270) {
-            float rotationAngleInRadians = (float) (rotationAngleInDegrees * (Math.PI / 180.0));
-            applyRotationTransform(rotationAngleInRadians);
-        } else {
-            float deltaX = 0;
-            float deltaY = pageCropBox.getHeight();
-            applyTranslationTransform(deltaX, deltaY);
+    /**
+     * The direction, in degrees, most of the glyphs shown on the page have, or the page
+     * rotation when no glyph was shown.
+     */
+    int getTextDirection() {
+        int rotation = ((page.getRotation() % 360) + 360) % 360;
+        int best = rotation % 90 == 0 ? rotation / 90 : 0;
+        for (int i = 0; i < glyphDirections.length; i++) {
+            if (glyphDirections[i] > glyphDirections[best]) {
+                best = i;
+            }
         }
-
-        applyScaleTransform(1, -1);
-        applyTranslationTransform(-pageCropBox.getLowerLeftX(), -pageCropBox.getLowerLeftY());
+        return best * 90;
     }
 
-    private void applyTranslationTransform(float dx, float dy) {
-        pageTransform[4] += dx;
-        pageTransform[5] += dy;
+    /**
+     * Counts a glyph shown with the given text rendering matrix, under the direction
+     * PDFBox's TextPosition gives it.
+     */
+    void countGlyph(Matrix textRenderingMatrix) {
+        float a = textRenderingMatrix.getValue(0, 0);
+        float b = textRenderingMatrix.getValue(0, 1);
+        float c = textRenderingMatrix.getValue(1, 0);
+        float d = textRenderingMatrix.getValue(1, 1);
+        int direction;
+        if (a > 0 && Math.abs(b) < d && Math.abs(c) < a && d > 0) {
+            direction = 0;
+        } else if (a < 0 && Math.abs(b) < Math.abs(d) && Math.abs(c) < Math.abs(a) && d < 0) {
+            direction = 2;
+        } else if (Math.abs(a) < Math.abs(c) && b > 0 && c < 0 && Math.abs(d) < b) {
+            direction = 1;
+        } else if (Math.abs(a) < c && b < 0 && c > 0 && Math.abs(d) < Math.abs(b)) {
+            direction = 3;
+        } else {
+            direction = 0;
+        }
+        glyphDirections[direction]++;
+        rulings = null;
     }
 
-    private void applyScaleTransform(float sx, float sy) {
-        pageTransform[0] *= sx;
-        pageTransform[3] *= sy;
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) {
+        // walking the page on our own, glyphs only tell the direction of the text
+        countGlyph(textRenderingMatrix);
     }
 
-    private void applyRotationTransform(float angle) {
-        float cos = (float) Math.cos(angle);
-        float sin = (float) Math.sin(angle);
-        pageTransform[0] = cos;
-        pageTransform[1] = -sin;
-        pageTransform[2] = sin;
-        pageTransform[3] = cos;
+    /**
+     * Registers the path construction and painting operators on another stream engine, so
+     * that the rulings of a page are collected during the same pass over its content stream
+     * that extracts the text.
+     */
+    void registerPathOperators(PDFStreamEngine context) {
+        for (String operatorName : PATH_OPERATORS) {
+            context.addOperator(new PathOperator(this, operatorName));
+        }
     }
 
     public void appendRectangle(float x, float y, float width, float height) {
@@ -73,24 +231,38 @@ class ObjectExtractorStreamEngine {
         closePath();
     }
 
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+        moveTo(p0.getX(), p0.getY());
+        lineTo(p1.getX(), p1.getY());
+        lineTo(p2.getX(), p2.getY());
+        lineTo(p3.getX(), p3.getY());
+        closePath();
+    }
+
     public void clip(int windingRule) {
         // Ignorowane dla uproszczenia
     }
 
     public void closePath() {
-        if (!currentPath.isEmpty()) {
-            currentPath.add(currentPath.get(0)); // Zamknięcie ścieżki
+        if (hasCurrentPoint) {
+            addSegment(currentX, currentY, subpathStartX, subpathStartY); // Zamknięcie ścieżki
+            currentX = subpathStartX;
+            currentY = subpathStartY;
         }
     }
 
     public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
-        // Ignorowane: niepotrzebne do ekstrakcji linii
+        // Paths with curves are not table borders, they are dropped when painted
+        currentPathHasCurves = true;
+        currentX = x3;
+        currentY = y3;
+        hasCurrentPoint = true;
     }
 
     public void drawImage(PDImage arg0) {}
 
     public void endPath() {
-        currentPath.clear();
+        resetPath();
     }
 
     public void fillAndStrokePath(int arg0) {
@@ -102,16 +274,25 @@ class ObjectExtractorStreamEngine {
     }
 
     public Point2D getCurrentPoint() {
-        return currentPath.isEmpty() ? null : currentPath.get(currentPath.size() - 1);
+        return hasCurrentPoint ? new Point2D(currentX, currentY) : null;
     }
 
     public void lineTo(float x, float y) {
-        currentPath.add(new Point2D(x, y));
+        if (hasCurrentPoint) {
+            addSegment(currentX, currentY, x, y);
+        } else {
+            subpathStartX = x;
+            subpathStartY = y;
+            hasCurrentPoint = true;
+        }
+        currentX = x;
+        currentY = y;
     }
 
     public void moveTo(float x, float y) {
-        currentPath.clear();
-        currentPath.add(new Point2D(x, y));
+        currentX = subpathStartX = x;
+        currentY = subpathStartY = y;
+        hasCurrentPoint = true;
     }
 
     public void shadingFill(COSName arg0) {}
@@ -120,26 +301,56 @@ class ObjectExtractorStreamEngine {
         strokeOrFillPath(false);
     }
 
+    private void addSegment(float x1, float y1, float x2, float y2) {
+        int offset = pathSegmentCount * 4;
+        if (offset + 4 > pathSegments.length) {
+            pathSegments = Arrays.copyOf(pathSegments, pathSegments.length * 2);
+        }
+        pathSegments[offset] = x1;
+        pathSegments[offset + 1] = y1;
+        pathSegments[offset + 2] = x2;
+        pathSegments[offset + 3] = y2;
+        pathSegmentCount++;
+    }
+
     private void strokeOrFillPath(boolean isFill) {
-        if (!extractRulingLines || currentPath.size() < 2) {
-            currentPath.clear();
+        if (!extractRulingLines || currentPathHasCurves) {
+            resetPath();
             return;
         }
 
-        for (int i = 1; i < currentPath.size(); i++) {
-            Point2D start = currentPath.get(i - 1);
-            Point2D end = currentPath.get(i);
-            Ruling ruling = new Ruling(start, end);
-            if (ruling.length() > RULING_MINIMUM_LENGTH) {
-                rulings.add(ruling);
+        float left = cropBox.getLowerLeftX(), bottom = cropBox.getLowerLeftY();
+        float right = cropBox.getUpperRightX(), top = cropBox.getUpperRightY();
+        for (int i = 0; i < pathSegmentCount * 4; i += 4) {
+            float x1 = pathSegments[i], y1 = pathSegments[i + 1];
+            float x2 = pathSegments[i + 2], y2 = pathSegments[i + 3];
+
+            // the page transform keeps lengths, so short segments can go early
+            float dx = x2 - x1, dy = y2 - y1;
+            if (dx * dx + dy * dy <= RULING_MINIMUM_LENGTH * RULING_MINIMUM_LENGTH) {
+                continue;
+            }
+            if (Math.max(x1, x2) < left || Math.min(x1, x2) > right
+                    || Math.max(y1, y2) < bottom || Math.min(y1, y2) > top) {
+                continue;
+            }
+
+            int offset = rulingSegmentCount * 4;
+            if (offset + 4 > rulingSegments.length) {
+                rulingSegments = Arrays.copyOf(rulingSegments, rulingSegments.length * 2);
             }
+            System.arraycopy(pathSegments, i, rulingSegments, offset, 4);
+            rulingSegmentCount++;
         }
+        rulings = null;
 
-        currentPath.clear();
+        resetPath();
     }
 
-    public float[] getPageTransform() {
-        return pageTransform;
+    private void resetPath() {
+        pathSegmentCount = 0;
+        hasCurrentPoint = false;
+        currentPathHasCurves = false;
     }
 
     public Rectangle2D currentClippingPath() {
@@ -153,37 +364,190 @@ class ObjectExtractorStreamEngine {
     // 🔹 NOWE METODY 🔹
 
     /**
-     * Ekstrakcja linii z PDF
+     * Walks the content stream of the page on its own and collects its rulings.
+     * Not needed when the path operators were registered on the engine extracting the text.
      */
-    public void extractRulings() {
-        rulings.clear(); // Wyczyść poprzednie linie
-        strokeOrFillPath(false); // Wywołaj ekstrakcję
+    public void extractRulings() throws IOException {
+        rulingSegmentCount = 0;
+        Arrays.fill(glyphDirections, 0);
+        rulings = null;
+        resetPath();
+        processPage(page);
     }
 
     /**
      * Pobranie wykrytych linii
      */
     public List<Ruling> getRulings() {
+        if (rulings == null) {
+            rulings = createRulings();
+        }
         return rulings;
     }
 
+    // Maps the collected segments to the space of the page's glyphs
+    private List<Ruling> createRulings() {
+        float[] t = getPageTransform();
+        List<Ruling> result = new ArrayList<>(rulingSegmentCount);
+        for (int i = 0; i < rulingSegmentCount * 4; i += 4) {
+            float dx1 = rulingSegments[i], dy1 = rulingSegments[i + 1];
+            float dx2 = rulingSegments[i + 2], dy2 = rulingSegments[i + 3];
+            float x1 = t[0] * dx1 + t[2] * dy1 + t[4];
+            float y1 = t[1] * dx1 + t[3] * dy1 + t[5];
+            float x2 = t[0] * dx2 + t[2] * dy2 + t[4];
+            float y2 = t[1] * dx2 + t[3] * dy2 + t[5];
+
+            // rulings always start at their top-most, then left-most, point
+            Ruling ruling = comparePoints(x1, y1, x2, y2) <= 0
+                    ? Ruling.fromCoordinates(x1, y1, x2, y2)
+                    : Ruling.fromCoordinates(x2, y2, x1, y1);
+            if (ruling.length() > RULING_MINIMUM_LENGTH) {
+                result.add(ruling);
+            }
+        }
+        return result;
+    }
+
+    // Compares points rounded to hundredths, top-most then left-most first
+    private static int comparePoints(float x1, float y1, float x2, float y2) {
+        if (!Utils.isHundredthsCoordinate(x1) || !Utils.isHundredthsCoordinate(y1)
+                || !Utils.isHundredthsCoordinate(x2) || !Utils.isHundredthsCoordinate(y2)) {
+            int compareY = Float.compare(Utils.round(y1, 2), Utils.round(y2, 2));
+            return compareY != 0 ? compareY : Float.compare(Utils.round(x1, 2), Utils.round(x2, 2));
+        }
+        int compareY = Integer.compare(Utils.toHundredths(y1), Utils.toHundredths(y2));
+        return compareY != 0 ? compareY : Integer.compare(Utils.toHundredths(x1), Utils.toHundredths(x2));
+    }
+
     class PointComparator implements Comparator<Point2D> {
         @Override
         public int compare(Point2D p1, Point2D p2) {
-            float p1X = Utils.round(p1.getX(), 2);
-            float p1Y = Utils.round(p1.getY(), 2);
-            float p2X = Utils.round(p2.getX(), 2);
-            float p2Y = Utils.round(p2.getY(), 2);
-
-            if (p1Y > p2Y)
-                return 1;
-            if (p1Y < p2Y)
-                return -1;
-            if (p1X > p2X)
-                return 1;
-            if (p1X < p2X)
-                return -1;
-            return 0;
+            return comparePoints(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+        }
+    }
+
+    /**
+     * Applies one path operator of the content stream being processed by the engine it is
+     * registered on, mapping its operands from user space to device space with that engine's
+     * current transformation matrix, the same way PDFGraphicsStreamEngine does.
+     */
+    private static final class PathOperator extends OperatorProcessor {
+
+        private final ObjectExtractorStreamEngine engine;
+        private final String name;
+
+        PathOperator(ObjectExtractorStreamEngine engine, String name) {
+            this.engine = engine;
+            this.name = name;
+        }
+
+        @Override
+        public void process(Operator operator, List<COSBase> operands) throws IOException {
+            switch (name) {
+                case OperatorName.MOVE_TO:
+                    if (hasNumbers(operands, 2)) {
+                        Matrix ctm = ctm();
+                        float x = number(operands, 0), y = number(operands, 1);
+                        engine.moveTo(transformX(ctm, x, y), transformY(ctm, x, y));
+                    }
+                    break;
+                case OperatorName.LINE_TO:
+                    if (hasNumbers(operands, 2)) {
+                        Matrix ctm = ctm();
+                        float x = number(operands, 0), y = number(operands, 1);
+                        engine.lineTo(transformX(ctm, x, y), transformY(ctm, x, y));
+                    }
+                    break;
+                case OperatorName.CURVE_TO:
+                    if (hasNumbers(operands, 6)) {
+                        Matrix ctm = ctm();
+                        float x = number(operands, 4), y = number(operands, 5);
+                        engine.curveTo(0, 0, 0, 0, transformX(ctm, x, y), transformY(ctm, x, y));
+                    }
+                    break;
+                case OperatorName.CURVE_TO_REPLICATE_INITIAL_POINT:
+                case OperatorName.CURVE_TO_REPLICATE_FINAL_POINT:
+                    if (hasNumbers(operands, 4)) {
+                        Matrix ctm = ctm();
+                        float x = number(operands, 2), y = number(operands, 3);
+                        engine.curveTo(0, 0, 0, 0, transformX(ctm, x, y), transformY(ctm, x, y));
+                    }
+                    break;
+                case OperatorName.APPEND_RECT:
+                    if (hasNumbers(operands, 4)) {
+                        Matrix ctm = ctm();
+                        float x = number(operands, 0), y = number(operands, 1);
+                        float x2 = x + number(operands, 2), y2 = y + number(operands, 3);
+                        engine.moveTo(transformX(ctm, x, y), transformY(ctm, x, y));
+                        engine.lineTo(transformX(ctm, x2, y), transformY(ctm, x2, y));
+                        engine.lineTo(transformX(ctm, x2, y2), transformY(ctm, x2, y2));
+                        engine.lineTo(transformX(ctm, x, y2), transformY(ctm, x, y2));
+                        engine.closePath();
+                    }
+                    break;
+                case OperatorName.CLOSE_PATH:
+                    engine.closePath();
+                    break;
+                case OperatorName.ENDPATH:
+                    engine.endPath();
+                    break;
+                case OperatorName.STROKE_PATH:
+                    engine.strokePath();
+                    break;
+                case OperatorName.CLOSE_AND_STROKE:
+                    engine.closePath();
+                    engine.strokePath();
+                    break;
+                case OperatorName.FILL_NON_ZERO:
+                case OperatorName.LEGACY_FILL_NON_ZERO:
+                case OperatorName.FILL_EVEN_ODD:
+                    engine.fillPath(0);
+                    break;
+                case OperatorName.FILL_NON_ZERO_AND_STROKE:
+                case OperatorName.FILL_EVEN_ODD_AND_STROKE:
+                    engine.fillAndStrokePath(0);
+                    break;
+                case OperatorName.CLOSE_FILL_NON_ZERO_AND_STROKE:
+                case OperatorName.CLOSE_FILL_EVEN_ODD_AND_STROKE:
+                    engine.closePath();
+                    engine.fillAndStrokePath(0);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private static boolean hasNumbers(List<COSBase> operands, int count) {
+            if (operands.size() < count) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!(operands.get(i) instanceof COSNumber)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static float number(List<COSBase> operands, int index) {
+            return ((COSNumber) operands.get(index)).floatValue();
+        }
+
+        private Matrix ctm() {
+            return getContext().getGraphicsState().getCurrentTransformationMatrix();
+        }
+
+        private static float transformX(Matrix ctm, float x, float y) {
+            return ctm.getScaleX() * x + ctm.getShearX() * y + ctm.getTranslateX();
+        }
+
+        private static float transformY(Matrix ctm, float x, float y) {
+            return ctm.getShearY() * x + ctm.getScaleY() * y + ctm.getTranslateY();
+        }
+
+        @Override
+        public String getName() {
+            return name;
         }
     }
 }
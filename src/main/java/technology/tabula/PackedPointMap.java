@@ -0,0 +1,142 @@
+package technology.tabula;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from points to int values. Points are quantized to hundredths of
+ * a point with {@link Utils#toHundredths(float)} and packed into one long key, so points
+ * that round to the same coordinates are the same key, whatever float drift separates them,
+ * and no key or value is ever boxed.
+ *
+ * Entries are kept in insertion order and can't be removed.
+ */
+public class PackedPointMap {
+
+    public static final int NO_VALUE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // entries, in insertion order
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    // open-addressing table of entry index + 1, 0 for empty slots; length is a power of two
+    private int[] slots;
+
+    public PackedPointMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PackedPointMap(int expectedSize) {
+        int capacity = Math.max(INITIAL_CAPACITY, expectedSize);
+        keys = new long[capacity];
+        values = new int[capacity];
+        slots = new int[tableSizeFor(capacity)];
+    }
+
+    /**
+     * Packs the quantized coordinates of (x, y) into a key.
+     */
+    public static long key(float x, float y) {
+        return ((long) Utils.toHundredths(x) << 32) | (Utils.toHundredths(y) & 0xffffffffL);
+    }
+
+    // keeps the table at most half full
+    private static int tableSizeFor(int entries) {
+        return Integer.highestOneBit(Math.max(2, entries) - 1) << 2;
+    }
+
+    private static int hash(long key) {
+        // fmix64 of MurmurHash3, spreads the nearby coordinates of a page over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    // slot holding the key, or the empty slot where it would go
+    private int slotOf(long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (slots[slot] != 0 && keys[slots[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int get(long key) {
+        int entry = slots[slotOf(key)];
+        return entry == 0 ? NO_VALUE : values[entry - 1];
+    }
+
+    public int get(float x, float y) {
+        return get(key(x, y));
+    }
+
+    public boolean containsKey(long key) {
+        return slots[slotOf(key)] != 0;
+    }
+
+    /**
+     * Maps the key to the value and returns the previous value, or {@link #NO_VALUE}.
+     */
+    public int put(long key, int value) {
+        int slot = slotOf(key);
+        int entry = slots[slot];
+        if (entry != 0) {
+            int previous = values[entry - 1];
+            values[entry - 1] = value;
+            return previous;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        slots[slot] = size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return NO_VALUE;
+    }
+
+    public int put(float x, float y, int value) {
+        return put(key(x, y), value);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hash(keys[entry]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Key of the i-th entry in insertion order.
+     */
+    public long keyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Value of the i-th entry in insertion order.
+     */
+    public int valueAt(int i) {
+        return values[i];
+    }
+}
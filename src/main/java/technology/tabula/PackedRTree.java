@@ -0,0 +1,235 @@
+package technology.tabula;
+
+import java.util.Arrays;
+
+/**
+ * Read-only R-tree bulk-built from packed coordinate arrays, with the items packed into
+ * leaves either sort-tile-recursive or along a Hilbert curve. Items are identified by their
+ * index in the arrays the tree was built from.
+ *
+ * Every node, leaves included, is stored in flat arrays level by level: the leaves first,
+ * the root last. The tree is immutable once built, so it can be queried from several threads.
+ */
+final class PackedRTree {
+
+    private static final int NODE_CAPACITY = 16;
+    private static final int HILBERT_SIDE = 1 << 15;
+    private static final int HILBERT_MAX = HILBERT_SIDE - 1;
+
+    private final int itemCount;
+    // item ids in leaf order
+    private final int[] items;
+    private final float[] itemMinX, itemMinY, itemMaxX, itemMaxY;
+
+    // bounding boxes of nodes, and the range of children (items for leaves) of each node
+    private final float[] nodeMinX, nodeMinY, nodeMaxX, nodeMaxY;
+    private final int[] childStart, childEnd;
+    private final int leafCount;
+    private final int root;
+
+    static PackedRTree sortTileRecursive(float[] minX, float[] minY, float[] maxX, float[] maxY, int count) {
+        return new PackedRTree(minX, minY, maxX, maxY, count, strOrder(minX, minY, maxX, maxY, count));
+    }
+
+    static PackedRTree hilbert(float[] minX, float[] minY, float[] maxX, float[] maxY, int count) {
+        return new PackedRTree(minX, minY, maxX, maxY, count, hilbertOrder(minX, minY, maxX, maxY, count));
+    }
+
+    private PackedRTree(float[] minX, float[] minY, float[] maxX, float[] maxY, int count, int[] items) {
+        this.itemCount = count;
+        this.itemMinX = minX;
+        this.itemMinY = minY;
+        this.itemMaxX = maxX;
+        this.itemMaxY = maxY;
+        this.items = items;
+
+        int leaves = Math.max(1, (count + NODE_CAPACITY - 1) / NODE_CAPACITY);
+        int nodes = leaves;
+        for (int level = leaves; level > 1; ) {
+            level = (level + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            nodes += level;
+        }
+
+        nodeMinX = new float[nodes];
+        nodeMinY = new float[nodes];
+        nodeMaxX = new float[nodes];
+        nodeMaxY = new float[nodes];
+        childStart = new int[nodes];
+        childEnd = new int[nodes];
+        leafCount = leaves;
+
+        for (int leaf = 0; leaf < leaves; leaf++) {
+            int start = leaf * NODE_CAPACITY;
+            int end = Math.min(start + NODE_CAPACITY, count);
+            childStart[leaf] = start;
+            childEnd[leaf] = end;
+            float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+            float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+            for (int j = start; j < end; j++) {
+                int item = items[j];
+                x0 = Math.min(x0, minX[item]);
+                y0 = Math.min(y0, minY[item]);
+                x1 = Math.max(x1, maxX[item]);
+                y1 = Math.max(y1, maxY[item]);
+            }
+            nodeMinX[leaf] = x0;
+            nodeMinY[leaf] = y0;
+            nodeMaxX[leaf] = x1;
+            nodeMaxY[leaf] = y1;
+        }
+
+        // the children of upper levels are consecutive, already spatially grouped, nodes
+        int levelStart = 0, levelEnd = leaves, next = leaves;
+        while (levelEnd - levelStart > 1) {
+            int parentStart = next;
+            for (int start = levelStart; start < levelEnd; start += NODE_CAPACITY) {
+                int end = Math.min(start + NODE_CAPACITY, levelEnd);
+                childStart[next] = start;
+                childEnd[next] = end;
+                float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+                float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+                for (int child = start; child < end; child++) {
+                    x0 = Math.min(x0, nodeMinX[child]);
+                    y0 = Math.min(y0, nodeMinY[child]);
+                    x1 = Math.max(x1, nodeMaxX[child]);
+                    y1 = Math.max(y1, nodeMaxY[child]);
+                }
+                nodeMinX[next] = x0;
+                nodeMinY[next] = y0;
+                nodeMaxX[next] = x1;
+                nodeMaxY[next] = y1;
+                next++;
+            }
+            levelStart = parentStart;
+            levelEnd = next;
+        }
+        root = levelStart;
+    }
+
+    /**
+     * Sort-tile-recursive order of the items: vertical slices by center x, each sliced by
+     * center y into runs of NODE_CAPACITY items.
+     */
+    private static int[] strOrder(float[] minX, float[] minY, float[] maxX, float[] maxY, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = Utils.sortKey(minX[i] + maxX[i], i);
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[count];
+        int leaves = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = slices == 0 ? count : slices * NODE_CAPACITY;
+        for (int start = 0; start < count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, count);
+            for (int j = start; j < end; j++) {
+                int item = (int) keys[j];
+                keys[j] = Utils.sortKey(minY[item] + maxY[item], item);
+            }
+            Arrays.sort(keys, start, end);
+            for (int j = start; j < end; j++) {
+                order[j] = (int) keys[j];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Order of the items along a Hilbert curve through the centers of their boxes, on a
+     * 2^15 x 2^15 grid spanning the bounding box of all items.
+     */
+    private static int[] hilbertOrder(float[] minX, float[] minY, float[] maxX, float[] maxY, int count) {
+        float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+        float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            float cx = (minX[i] + maxX[i]) / 2, cy = (minY[i] + maxY[i]) / 2;
+            x0 = Math.min(x0, cx);
+            y0 = Math.min(y0, cy);
+            x1 = Math.max(x1, cx);
+            y1 = Math.max(y1, cy);
+        }
+        float scaleX = x1 > x0 ? HILBERT_MAX / (x1 - x0) : 0;
+        float scaleY = y1 > y0 ? HILBERT_MAX / (y1 - y0) : 0;
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int hx = Math.min(HILBERT_MAX, (int) (((minX[i] + maxX[i]) / 2 - x0) * scaleX));
+            int hy = Math.min(HILBERT_MAX, (int) (((minY[i] + maxY[i]) / 2 - y0) * scaleY));
+            keys[i] = ((long) hilbertIndex(hx, hy) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    // distance of (x, y) along the Hilbert curve filling the 2^15 x 2^15 grid, below 2^30
+    private static int hilbertIndex(int x, int y) {
+        int d = 0;
+        for (int s = HILBERT_SIDE / 2; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve continues from where it left the previous one
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    int size() {
+        return itemCount;
+    }
+
+    /**
+     * Ids of the items whose box intersects the query box, edges included, in leaf order.
+     */
+    int[] query(float minX, float minY, float maxX, float maxY) {
+        if (itemCount == 0) {
+            return new int[0];
+        }
+
+        int[] result = new int[16];
+        int found = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeMinX[node] > maxX || nodeMaxX[node] < minX || nodeMinY[node] > maxY || nodeMaxY[node] < minY) {
+                continue;
+            }
+            if (node < leafCount) {
+                for (int j = childStart[node]; j < childEnd[node]; j++) {
+                    int item = items[j];
+                    if (itemMinX[item] <= maxX && itemMaxX[item] >= minX && itemMinY[item] <= maxY && itemMaxY[item] >= minY) {
+                        if (found == result.length) {
+                            result = Arrays.copyOf(result, result.length * 2);
+                        }
+                        result[found++] = item;
+                    }
+                }
+            } else {
+                int children = childEnd[node] - childStart[node];
+                if (top + children > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children));
+                }
+                for (int child = childStart[node]; child < childEnd[node]; child++) {
+                    stack[top++] = child;
+                }
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+}
@@ -0,0 +1,51 @@
+package technology.tabula;
+
+import java.util.List;
+
+/**
+ * Spatial index backed by a {@link PackedRTree}. The tree is packed on the first query and
+ * packed again on the first query after rectangles were added.
+ */
+class PackedRTreeSpatialIndex<T extends Rectangle> extends AbstractRectangleSpatialIndex<T> {
+
+    private final boolean hilbert;
+    private PackedRTree tree;
+
+    PackedRTreeSpatialIndex(List<T> inReadingOrder, boolean hilbert) {
+        super(inReadingOrder);
+        this.hilbert = hilbert;
+    }
+
+    @Override
+    protected void added(int id, T te) {
+        synchronized (this) {
+            tree = null;
+        }
+    }
+
+    private synchronized PackedRTree tree() {
+        if (tree == null) {
+            int count = rectangles.size();
+            float[] lefts = new float[count];
+            float[] tops = new float[count];
+            float[] rights = new float[count];
+            float[] bottoms = new float[count];
+            for (int i = 0; i < count; i++) {
+                lefts[i] = left(i);
+                tops[i] = top(i);
+                rights[i] = right(i);
+                bottoms[i] = bottom(i);
+            }
+            tree = hilbert
+                    ? PackedRTree.hilbert(lefts, tops, rights, bottoms, count)
+                    : PackedRTree.sortTileRecursive(lefts, tops, rights, bottoms, count);
+        }
+        return tree;
+    }
+
+    @Override
+    protected int[] query(float left, float top, float right, float bottom) {
+        return tree().query(left, top, right, bottom);
+    }
+
+}
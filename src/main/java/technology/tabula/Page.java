@@ -1,5 +1,7 @@
 package technology.tabula;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,10 +17,23 @@ public class Page extends Rectangle {
     private float minCharWidth;
     private float minCharHeight;
     private List<TextElement> textElements;
+    // Glyphs of pages built from a PageTextBuffer. The spatial index is built from it on first
+    // use, over textViews, which only creates the TextElements that are read; it is released
+    // once all of them exist.
+    private PageTextBuffer textBuffer;
+    private TextElementViews textViews;
     private List<Ruling> rulings, cleanRulings = null;
+    // rulings classified by orientation, created from rulings on first use
+    private RulingStore rulingStore;
     private PDPage pdPage;
     private PDDocument pdDoc;
     private RectangleSpatialIndex<TextElement> spatialIndex;
+    // see isLeftToRight(), null until known
+    private Boolean leftToRight;
+
+    // Cleared by pages whose layers are produced on first use, see LazyPage
+    private boolean textLoaded = true;
+    private boolean rulingsLoaded = true;
 
     private static final float DEFAULT_MIN_CHAR_LENGTH = 7;
 
@@ -37,16 +52,126 @@ public class Page extends Rectangle {
         this.spatialIndex = index;
     }
 
+    /**
+     * Creates a page that keeps its glyphs in columnar form. TextElement objects and the
+     * spatial index are only created once the text is queried.
+     */
+    public Page(Rectangle area, int rotation, int number, PDPage pdPage, PDDocument doc,
+                PageTextBuffer text, List<Ruling> rulings, float minCharWidth, float minCharHeight) {
+        super(area.getTop(), area.getLeft(), (float) area.getWidth(), (float) area.getHeight());
+        this.rotation = rotation;
+        this.number = number;
+        this.pdPage = pdPage;
+        this.pdDoc = doc;
+        this.textBuffer = text;
+        this.rulings = rulings;
+        this.minCharWidth = minCharWidth;
+        this.minCharHeight = minCharHeight;
+    }
+
+    /**
+     * Creates a page whose text layer and ruling layer are both produced on first use,
+     * through {@link #loadText()} and {@link #loadRulings()}.
+     */
+    protected Page(Rectangle area, int rotation, int number, PDPage pdPage, PDDocument doc) {
+        super(area.getTop(), area.getLeft(), (float) area.getWidth(), (float) area.getHeight());
+        this.rotation = rotation;
+        this.number = number;
+        this.pdPage = pdPage;
+        this.pdDoc = doc;
+        this.textLoaded = false;
+        this.rulingsLoaded = false;
+    }
+
+    /**
+     * Produces the text layer of a lazily loaded page by calling {@link #setTextLayer}.
+     * Eagerly built pages never call it.
+     */
+    protected void loadText() throws IOException {
+    }
+
+    /**
+     * Produces the ruling layer of a lazily loaded page by calling {@link #setRulingLayer}.
+     * Eagerly built pages never call it.
+     */
+    protected void loadRulings() throws IOException {
+    }
+
+    protected final void setTextLayer(PageTextBuffer text, float minCharWidth, float minCharHeight) {
+        this.textBuffer = text;
+        this.textElements = null;
+        this.textViews = null;
+        this.spatialIndex = null;
+        this.leftToRight = null;
+        this.minCharWidth = minCharWidth;
+        this.minCharHeight = minCharHeight;
+        this.textLoaded = true;
+    }
+
+    protected final void setRulingLayer(List<Ruling> rulings) {
+        this.rulings = rulings;
+        this.cleanRulings = null;
+        this.rulingStore = null;
+        this.rulingsLoaded = true;
+    }
+
+    protected final boolean isTextLoaded() {
+        return textLoaded;
+    }
+
+    protected final boolean isRulingsLoaded() {
+        return rulingsLoaded;
+    }
+
+    private void ensureTextLoaded() {
+        if (textLoaded) return;
+        try {
+            loadText();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extract the text of page " + number, e);
+        }
+    }
+
+    private void ensureTextIndexed() {
+        ensureTextLoaded();
+        if (textElements != null || textViews != null) return;
+
+        // the views are in reading order, so the index can answer queries in that order
+        textViews = new TextElementViews(textBuffer);
+        spatialIndex = RectangleSpatialIndex.ofReadingOrder(textViews);
+    }
+
+    // once every glyph has its TextElement the views stand for the buffer
+    private void releaseTextBuffer() {
+        if (textBuffer != null && textViews.isComplete()) {
+            leftToRight = textBuffer.isLeftToRight();
+            textBuffer = null;
+        }
+    }
+
+    private void ensureRulingsLoaded() {
+        if (rulingsLoaded) return;
+        try {
+            loadRulings();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extract the rulings of page " + number, e);
+        }
+    }
+
     public Page getArea(Rectangle area) {
         List<TextElement> areaTextElements = getText(area);
         float minimumCharWidth = getMinimumCharWidthFrom(areaTextElements);
         float minimumCharHeight = getMinimumCharHeightFrom(areaTextElements);
 
         Page page = new Page(area, rotation, number, pdPage, pdDoc,
-                areaTextElements, Ruling.cropRulingsToArea(getRulings(), area),
+                areaTextElements, Ruling.cropRulingsToArea(getRulingStore(), area),
                 minimumCharWidth, minimumCharHeight, spatialIndex);
 
         addBorderRulingsTo(page);
+        // the glyphs of an area of an LTR page are LTR too
+        if (isLeftToRight()) {
+            page.leftToRight = true;
+        }
         return page;
     }
 
@@ -73,10 +198,16 @@ public class Page extends Rectangle {
     }
 
     public List<TextElement> getText(Rectangle area) {
-        return spatialIndex.contains(area);
+        ensureTextIndexed();
+        List<TextElement> found = spatialIndex.contains(area);
+        if (textViews != null) {
+            releaseTextBuffer();
+        }
+        return found;
     }
 
     public List<Ruling> getRulings() {
+        ensureRulingsLoaded();
         if (cleanRulings != null) return cleanRulings;
         if (rulings == null || rulings.isEmpty()) return new ArrayList<>();
 
@@ -88,8 +219,23 @@ public class Page extends Rectangle {
         if (ruling.getStartPoint().equals(ruling.getEndPoint())) {
             throw new UnsupportedOperationException("Can't add a point ruling.");
         }
+        ensureRulingsLoaded();
         rulings.add(ruling);
         cleanRulings = null;
+        if (rulingStore != null) {
+            rulingStore.add(ruling);
+        }
+    }
+
+    /**
+     * The rulings of the page classified by orientation, for range queries.
+     */
+    public RulingStore getRulingStore() {
+        ensureRulingsLoaded();
+        if (rulingStore == null) {
+            rulingStore = new RulingStore(rulings);
+        }
+        return rulingStore;
     }
 
     public PDPage getPDPage() {
@@ -101,28 +247,62 @@ public class Page extends Rectangle {
     }
 
     public Rectangle getTextBounds() {
-        if (textElements.isEmpty()) return new Rectangle();
-        return Utils.bounds(textElements);
+        ensureTextLoaded();
+        if (textBuffer != null) return textBuffer.getBounds();
+        List<TextElement> text = textElements != null ? textElements : textViews;
+        if (text.isEmpty()) return new Rectangle();
+        return Utils.bounds(text);
     }
 
+    /**
+     * A new list of the vertical rulings, which the caller may change. Read-only callers
+     * can use the views of {@link #getRulingStore()} instead.
+     */
     public List<Ruling> getVerticalRulings() {
-        List<Ruling> verticalLines = new ArrayList<>();
-        for (Ruling r : rulings) {
-            if (r.vertical()) {
-                verticalLines.add(r);
-            }
-        }
-        return verticalLines;
+        return new ArrayList<>(getRulingStore().getVerticals());
     }
 
+    /**
+     * A new list of the horizontal rulings, which the caller may change. Read-only callers
+     * can use the views of {@link #getRulingStore()} instead.
+     */
     public List<Ruling> getHorizontalRulings() {
-        List<Ruling> horizontalLines = new ArrayList<>();
-        for (Ruling r : rulings) {
-            if (r.horizontal()) {
-                horizontalLines.add(r);
+        return new ArrayList<>(getRulingStore().getHorizontals());
+    }
+
+    /**
+     * Whether the text of every glyph is LTR or neutral (see
+     * {@link TextChunk#isLeftToRight(String)}), so that words need no directional
+     * regrouping. Pages built from a PageTextBuffer know it from extraction; other pages
+     * check their glyphs once.
+     */
+    public boolean isLeftToRight() {
+        ensureTextLoaded();
+        if (leftToRight == null) {
+            if (textBuffer != null) {
+                leftToRight = textBuffer.isLeftToRight();
+            } else {
+                boolean ltr = true;
+                for (TextElement te : textElements) {
+                    if (!TextChunk.isLeftToRight(te.getText())) {
+                        ltr = false;
+                        break;
+                    }
+                }
+                leftToRight = ltr;
             }
         }
-        return horizontalLines;
+        return leftToRight;
+    }
+
+    /**
+     * Glyphs of the page in columnar form, or null for pages built from TextElement lists
+     * (such as the pages returned by {@link #getArea(Rectangle)}) and once every glyph has
+     * its TextElement.
+     */
+    public PageTextBuffer getTextBuffer() {
+        ensureTextLoaded();
+        return textBuffer;
     }
 
     public int getPageNumber() {
@@ -130,6 +310,12 @@ public class Page extends Rectangle {
     }
 
     public List<TextElement> getText() {
+        ensureTextIndexed();
+        if (textElements == null) {
+            // a list of its own, so callers changing it leave the index alone
+            textElements = new ArrayList<>(textViews);
+            releaseTextBuffer();
+        }
         return textElements;
     }
 }
@@ -7,11 +7,17 @@ public class PageIterator implements Iterator<Page> {
 
     private ObjectExtractor objectExtractor;
     private Iterator<Integer> pageIndexIterator;
+    private boolean lazy;
 
     public PageIterator(ObjectExtractor objectExtractor, Iterable<Integer> pages) {
+        this(objectExtractor, pages, false);
+    }
+
+    PageIterator(ObjectExtractor objectExtractor, Iterable<Integer> pages, boolean lazy) {
         super();
         this.objectExtractor = objectExtractor;
         this.pageIndexIterator = pages.iterator();
+        this.lazy = lazy;
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
@@ -26,6 +32,9 @@ public class PageIterator implements Iterator<Page> {
         if (!this.hasNext()) {
             throw new IllegalStateException();
         }
+        if (lazy) {
+            return objectExtractor.extractLazyPage(pageIndexIterator.next());
+        }
         try {
             nextPage = objectExtractor.extractPage(pageIndexIterator.next());
         } catch (IOException e) {
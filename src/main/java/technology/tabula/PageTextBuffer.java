@@ -0,0 +1,207 @@
+package technology.tabula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.tom_roush.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * Columnar store of the glyphs of a page: one primitive array per attribute instead of one
+ * TextElement object per glyph. TextStripper fills it while walking the page; TextElement
+ * views are only created when a caller asks for them.
+ *
+ * Glyph i is the i-th glyph added, in content stream order. Its text and font are
+ * referenced by ids of the document's {@link GlyphTable}.
+ */
+public class PageTextBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int size = 0;
+    private float[] tops = new float[INITIAL_CAPACITY];
+    private float[] lefts = new float[INITIAL_CAPACITY];
+    private float[] widths = new float[INITIAL_CAPACITY];
+    private float[] heights = new float[INITIAL_CAPACITY];
+    private float[] fontSizes = new float[INITIAL_CAPACITY];
+    private float[] widthsOfSpace = new float[INITIAL_CAPACITY];
+    private float[] directions = new float[INITIAL_CAPACITY];
+    private int[] fontIds = new int[INITIAL_CAPACITY];
+    private int[] textIds = new int[INITIAL_CAPACITY];
+
+    private final GlyphTable glyphs;
+    // no glyph so far has RTL or other non-neutral characters
+    private boolean leftToRight = true;
+
+    public PageTextBuffer(GlyphTable glyphs) {
+        this.glyphs = glyphs;
+    }
+
+    void add(float top, float left, float width, float height, PDFont font, float fontSize,
+             String text, float widthOfSpace, float direction) {
+        if (size == tops.length) {
+            grow();
+        }
+        tops[size] = top;
+        lefts[size] = left;
+        widths[size] = width;
+        heights[size] = height;
+        fontSizes[size] = fontSize;
+        widthsOfSpace[size] = widthOfSpace;
+        directions[size] = direction;
+        fontIds[size] = glyphs.internFont(font);
+        textIds[size] = glyphs.internText(text);
+        if (leftToRight && !glyphs.isLeftToRight(textIds[size])) {
+            leftToRight = false;
+        }
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, tops.length * 2);
+        tops = Arrays.copyOf(tops, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        fontSizes = Arrays.copyOf(fontSizes, capacity);
+        widthsOfSpace = Arrays.copyOf(widthsOfSpace, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        fontIds = Arrays.copyOf(fontIds, capacity);
+        textIds = Arrays.copyOf(textIds, capacity);
+    }
+
+    /**
+     * Shrinks the arrays to the glyphs added so far.
+     */
+    void trimToSize() {
+        if (size == tops.length) {
+            return;
+        }
+        tops = Arrays.copyOf(tops, size);
+        lefts = Arrays.copyOf(lefts, size);
+        widths = Arrays.copyOf(widths, size);
+        heights = Arrays.copyOf(heights, size);
+        fontSizes = Arrays.copyOf(fontSizes, size);
+        widthsOfSpace = Arrays.copyOf(widthsOfSpace, size);
+        directions = Arrays.copyOf(directions, size);
+        fontIds = Arrays.copyOf(fontIds, size);
+        textIds = Arrays.copyOf(textIds, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Whether the text of every glyph is LTR or neutral, so words need no directional
+     * regrouping. Tracked as glyphs are added.
+     */
+    public boolean isLeftToRight() {
+        return leftToRight;
+    }
+
+    public float getTop(int i) {
+        return tops[i];
+    }
+
+    public float getLeft(int i) {
+        return lefts[i];
+    }
+
+    public float getWidth(int i) {
+        return widths[i];
+    }
+
+    public float getHeight(int i) {
+        return heights[i];
+    }
+
+    public float getRight(int i) {
+        return lefts[i] + widths[i];
+    }
+
+    public float getBottom(int i) {
+        return tops[i] + heights[i];
+    }
+
+    public float getFontSize(int i) {
+        return fontSizes[i];
+    }
+
+    public float getWidthOfSpace(int i) {
+        return widthsOfSpace[i];
+    }
+
+    public float getDirection(int i) {
+        return directions[i];
+    }
+
+    public int getFontId(int i) {
+        return fontIds[i];
+    }
+
+    public PDFont getFont(int i) {
+        return glyphs.getFont(fontIds[i]);
+    }
+
+    public int getTextId(int i) {
+        return textIds[i];
+    }
+
+    /**
+     * Text of glyph i, the instance shared by every glyph of the document with the same text.
+     */
+    public String getText(int i) {
+        return glyphs.getText(textIds[i]);
+    }
+
+    public GlyphTable getGlyphTable() {
+        return glyphs;
+    }
+
+    /**
+     * Creates a TextElement view of glyph i. Every call creates a new object.
+     */
+    public TextElement getTextElement(int i) {
+        return new TextElement(tops[i], lefts[i], widths[i], heights[i], getFont(i), fontSizes[i],
+                getText(i), widthsOfSpace[i], directions[i]);
+    }
+
+    /**
+     * Creates TextElement views of all glyphs, in the order they were added.
+     */
+    public List<TextElement> toTextElements() {
+        List<TextElement> textElements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            textElements.add(getTextElement(i));
+        }
+        return textElements;
+    }
+
+    /**
+     * Bounding box of all glyphs, same as <code>Utils.bounds(toTextElements())</code>.
+     */
+    public Rectangle getBounds() {
+        if (size == 0) {
+            return new Rectangle();
+        }
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = Float.MIN_VALUE;
+        float maxY = Float.MIN_VALUE;
+
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, lefts[i]);
+            minY = Math.min(minY, tops[i]);
+            maxX = Math.max(maxX, getRight(i));
+            maxY = Math.max(maxY, getBottom(i));
+        }
+
+        return new Rectangle(minY, minX, maxX - minX, maxY - minY);
+    }
+}
@@ -0,0 +1,135 @@
+package technology.tabula;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Page iterator that extracts the following pages on a background thread while the caller
+ * works on the current one.
+ *
+ * At most <code>lookAhead</code> extracted pages wait in the queue. The worker is the only
+ * thread that touches the document while the iterator is open. An extraction failure is
+ * rethrown by {@link #next()} on the consumer thread, wrapped in an UncheckedIOException
+ * when it is an IOException, and ends the iteration.
+ */
+public class PrefetchingPageIterator implements Iterator<Page>, Closeable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread worker;
+    private Object nextElement;
+    private volatile boolean closed = false;
+
+    public PrefetchingPageIterator(final ObjectExtractor objectExtractor, final Iterable<Integer> pages, int lookAhead) {
+        if (lookAhead < 1) {
+            throw new IllegalArgumentException("lookAhead must be at least 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(lookAhead);
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (Integer pageNumber : pages) {
+                        if (closed) {
+                            return;
+                        }
+                        Object result;
+                        try {
+                            result = objectExtractor.extractPage(pageNumber);
+                        } catch (Throwable t) {
+                            queue.put(new Failure(t));
+                            return;
+                        }
+                        queue.put(result);
+                    }
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // closed by the consumer
+                }
+            }
+        }, "tabula-page-prefetch");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextElement == null) {
+            if (closed) {
+                return false;
+            }
+            try {
+                nextElement = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next page", e);
+            }
+        }
+        return nextElement != END;
+    }
+
+    @Override
+    public Page next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object element = nextElement;
+        if (element instanceof Failure) {
+            // the worker stopped after the failure, nothing follows it
+            nextElement = END;
+            ((Failure) element).rethrow();
+        }
+        nextElement = null;
+        return (Page) element;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the background extraction and waits for the worker to let go of the document,
+     * so that the document can be closed afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        worker.interrupt();
+        queue.clear();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queue.clear();
+        nextElement = null;
+    }
+
+    private static final class Failure {
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+
+        void rethrow() {
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
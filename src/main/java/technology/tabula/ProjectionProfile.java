@@ -74,7 +74,7 @@ public class ProjectionProfile {
         boolean foundNarrower = false;
 
         List<Integer> verticalSeparators = new ArrayList<>();
-        for (Ruling r: area.getVerticalRulings()) {
+        for (Ruling r: area.getRulingStore().getVerticals()) {
             if (r.length() / this.textBounds.getHeight() >= 0.95) {
                 verticalSeparators.add(toFixed(r.getPosition() - this.areaLeft));
             }
@@ -106,7 +106,7 @@ public class ProjectionProfile {
         boolean foundShorter = false;
 
         List<Integer> horizontalSeparators = new ArrayList<>();
-        for (Ruling r: area.getHorizontalRulings()) {
+        for (Ruling r: area.getRulingStore().getHorizontals()) {
             System.out.println(r.length() / this.textBounds.getWidth());
             if (r.length() / this.textBounds.getWidth() >= 0.95) {
                 horizontalSeparators.add(toFixed(r.getPosition() - this.areaTop));
@@ -0,0 +1,168 @@
+package technology.tabula;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorts rectangles into reading order in near-linear time, as a total order that
+ * {@link Rectangle#ILL_DEFINED_ORDER} approximates pairwise.
+ *
+ * Rectangles are visited by top and gathered into line bands: a rectangle joins the band
+ * above it when it overlaps that band vertically by more than the threshold of
+ * ILL_DEFINED_ORDER, otherwise it starts a new band, and a band grows to the extent of
+ * its members. Bands are read top to bottom, and the members of a band left to right, or
+ * right to left when more of them are RTL-dominant than LTR-dominant (see
+ * {@link Rectangle#isLtrDominant()}). Both orders are radix sorts on coordinates rounded
+ * to hundredths ({@link Utils#toHundredths(float)}), ties keeping the order of the list.
+ */
+public final class ReadingOrder {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    // below this size an insertion sort beats clearing the digit counts
+    private static final int INSERTION_SORT_THRESHOLD = 48;
+
+    private ReadingOrder() {
+    }
+
+    public static <T extends Rectangle> void sort(List<T> list) {
+        int count = list.size();
+        if (count < 2) {
+            return;
+        }
+        Rectangle[] rectangles = list.toArray(new Rectangle[0]);
+        float[] tops = new float[count], bottoms = new float[count], lefts = new float[count];
+        int[] ltrDominance = new int[count];
+        for (int i = 0; i < count; i++) {
+            tops[i] = rectangles[i].getTop();
+            bottoms[i] = rectangles[i].getBottom();
+            lefts[i] = rectangles[i].getLeft();
+            ltrDominance[i] = rectangles[i].isLtrDominant();
+        }
+
+        int[] order = order(tops, bottoms, lefts, ltrDominance, count);
+        for (int i = 0; i < count; i++) {
+            @SuppressWarnings("unchecked")
+            T t = (T) rectangles[order[i]];
+            list.set(i, t);
+        }
+    }
+
+    /**
+     * Indexes of the rectangles given by their coordinates in reading order, as
+     * {@link #sort(List)} orders them.
+     *
+     * @param ltrDominance {@link Rectangle#isLtrDominant()} of each rectangle, or null when
+     *                     it is 0 for all of them, as for glyphs
+     */
+    static int[] order(float[] tops, float[] bottoms, float[] lefts, int[] ltrDominance, int count) {
+        if (count < 2) {
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        int[] band = bands(tops, bottoms, count);
+        int bandCount = 0;
+        for (int b : band) {
+            bandCount = Math.max(bandCount, b + 1);
+        }
+        int[] ltrBalance = new int[bandCount];
+        int minLeft = Integer.MAX_VALUE, maxLeft = Integer.MIN_VALUE;
+        int[] quantizedLefts = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (ltrDominance != null) {
+                ltrBalance[band[i]] += Integer.signum(ltrDominance[i]);
+            }
+            quantizedLefts[i] = Utils.toHundredths(lefts[i]);
+            minLeft = Math.min(minLeft, quantizedLefts[i]);
+            maxLeft = Math.max(maxLeft, quantizedLefts[i]);
+        }
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            long x = ltrBalance[band[i]] < 0 ? (long) maxLeft - quantizedLefts[i] : (long) quantizedLefts[i] - minLeft;
+            keys[i] = ((long) band[i] << 32) | x;
+        }
+        return radixOrder(keys);
+    }
+
+    // band of each rectangle, bands numbered from the top
+    private static int[] bands(float[] tops, float[] bottoms, int count) {
+        long[] topKeys = new long[count];
+        int minTop = Integer.MAX_VALUE;
+        int[] quantized = new int[count];
+        for (int i = 0; i < count; i++) {
+            quantized[i] = Utils.toHundredths(tops[i]);
+            minTop = Math.min(minTop, quantized[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            topKeys[i] = (long) quantized[i] - minTop;
+        }
+
+        int[] band = new int[count];
+        int current = -1;
+        float bandTop = 0, bandBottom = 0;
+        for (int i : radixOrder(topKeys)) {
+            float overlap = Math.min(bandBottom, bottoms[i]) - Math.max(bandTop, tops[i]);
+            if (current < 0 || overlap <= Rectangle.VERTICAL_COMPARISON_THRESHOLD) {
+                current++;
+                bandTop = tops[i];
+                bandBottom = bottoms[i];
+            } else {
+                bandTop = Math.min(bandTop, tops[i]);
+                bandBottom = Math.max(bandBottom, bottoms[i]);
+            }
+            band[i] = current;
+        }
+        return band;
+    }
+
+    /**
+     * Indexes of the non-negative keys in ascending order, equal keys by index: a least
+     * significant digit radix sort, skipping the digits above the largest key.
+     */
+    private static int[] radixOrder(long[] keys) {
+        int count = keys.length;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        if (count < INSERTION_SORT_THRESHOLD) {
+            for (int i = 1; i < count; i++) {
+                int id = order[i];
+                int j = i;
+                for (; j > 0 && keys[order[j - 1]] > keys[id]; j--) {
+                    order[j] = order[j - 1];
+                }
+                order[j] = id;
+            }
+            return order;
+        }
+        long max = 0;
+        for (long key : keys) {
+            max = Math.max(max, key);
+        }
+
+        int[] buffer = new int[count];
+        int[] counts = new int[RADIX + 1];
+        for (int shift = 0; shift < Long.SIZE && (max >>> shift) != 0; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) ((keys[i] >>> shift) & (RADIX - 1)) + 1]++;
+            }
+            for (int d = 0; d < RADIX; d++) {
+                counts[d + 1] += counts[d];
+            }
+            for (int i : order) {
+                buffer[counts[(int) ((keys[i] >>> shift) & (RADIX - 1))]++] = i;
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,17 @@
+package technology.tabula;
+
+/**
+ * Coordinates of the rectangles of a list, by position in the list. Implemented by lists
+ * whose elements are created on demand, so the spatial indexes can be built and queried
+ * from the coordinates without creating the elements.
+ */
+interface RectangleBounds {
+
+    float getLeft(int i);
+
+    float getTop(int i);
+
+    float getRight(int i);
+
+    float getBottom(int i);
+}
@@ -1,42 +1,93 @@
 package technology.tabula;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
-import org.locationtech.jts.geom.Envelope;
-import org.locationtech.jts.index.strtree.STRtree;
+/**
+ * Index of rectangles answering area queries. Several backends are available, see
+ * {@link Backend}; the one used by {@link #create()} and {@link #ofReadingOrder(List)}
+ * is taken from the <code>tabula.spatialIndex</code> system property.
+ */
+public interface RectangleSpatialIndex<T extends Rectangle> {
 
-public class RectangleSpatialIndex<T extends Rectangle> {
-    
+    String BACKEND_PROPERTY = "tabula.spatialIndex";
 
-    private final STRtree si = new STRtree();
-    private final List<T> rectangles = new ArrayList<>();
+    enum Backend {
+        /** Uniform grid of buckets sized after the average rectangle. */
+        GRID,
+        /** R-tree packed along a Hilbert curve. */
+        HILBERT_RTREE,
+        /** R-tree packed sort-tile-recursive. */
+        STR_RTREE,
+        /** JTS STRtree, the only backend that needs jts-core on the classpath. */
+        JTS_STRTREE;
 
-    public void add(T te) {
-        rectangles.add(te);
-        si.insert(new Envelope(te.getLeft(), te.getRight(), te.getBottom(), te.getTop()), te);
-    }
-    
-    public List<T> contains(Rectangle r) {
-        List<T> intersection = si.query(new Envelope(r.getLeft(), r.getRight(), r.getTop(), r.getBottom()));
-        List<T> rv = new ArrayList<T>();
-
-        for (T ir: intersection) {
-            if (r.contains(ir)) {
-                rv.add(ir);
+        <T extends Rectangle> RectangleSpatialIndex<T> create(List<T> inReadingOrder) {
+            switch (this) {
+                case GRID:
+                    return new GridSpatialIndex<>(inReadingOrder);
+                case HILBERT_RTREE:
+                    return new PackedRTreeSpatialIndex<>(inReadingOrder, true);
+                case STR_RTREE:
+                    return new PackedRTreeSpatialIndex<>(inReadingOrder, false);
+                default:
+                    return new STRtreeSpatialIndex<>(inReadingOrder);
             }
         }
 
-        Utils.sort(rv, Rectangle.ILL_DEFINED_ORDER);
-        return rv;
+        /**
+         * The backend named by the <code>tabula.spatialIndex</code> system property,
+         * {@link #GRID} when it is not set.
+         */
+        public static Backend configured() {
+            String name = System.getProperty(BACKEND_PROPERTY);
+            if (name == null || name.trim().isEmpty()) {
+                return GRID;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown spatial index backend: " + name, e);
+            }
+        }
     }
-    
-    public List<T> intersects(Rectangle r) {
-      return si.query(new Envelope(r.getLeft(), r.getRight(), r.getTop(), r.getBottom()));
+
+    /**
+     * Creates an empty index on the configured backend.
+     */
+    static <T extends Rectangle> RectangleSpatialIndex<T> create() {
+        return create(Backend.configured());
+    }
+
+    static <T extends Rectangle> RectangleSpatialIndex<T> create(Backend backend) {
+        return backend.create(null);
     }
 
-    public Rectangle getBounds() {
-        return Rectangle.boundingBoxOf(rectangles);
+    /**
+     * Bulk-loads a read-only index on the configured backend from rectangles already
+     * sorted with {@link ReadingOrder}. Queries return their results in
+     * that order instead of sorting them again, and {@link #add} is not supported.
+     */
+    static <T extends Rectangle> RectangleSpatialIndex<T> ofReadingOrder(List<T> inReadingOrder) {
+        return ofReadingOrder(inReadingOrder, Backend.configured());
     }
 
+    static <T extends Rectangle> RectangleSpatialIndex<T> ofReadingOrder(List<T> inReadingOrder, Backend backend) {
+        return backend.create(inReadingOrder);
+    }
+
+    void add(T te);
+
+    /**
+     * Rectangles lying within <code>r</code>, in reading order (see {@link ReadingOrder}).
+     */
+    List<T> contains(Rectangle r);
+
+    /**
+     * Rectangles touching <code>r</code>, edges included.
+     */
+    List<T> intersects(Rectangle r);
+
+    Rectangle getBounds();
+
 }
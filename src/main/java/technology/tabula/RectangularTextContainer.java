@@ -19,15 +19,24 @@ public class RectangularTextContainer<T extends Rectangle & HasText> extends Rec
 			this.getTextElements().addAll(0, other.getTextElements());
 		}
 		super.merge(other);
+		textElementsChanged();
 		return this;
 	}
 
+	/**
+	 * Called after text elements were added or replaced through this class, so subclasses
+	 * can drop what they derived from them.
+	 */
+	protected void textElementsChanged() {
+	}
+
 	public List<T> getTextElements() {
 		return textElements;
 	}
 
 	public void setTextElements(List<T> textElements) {
 		this.textElements = textElements;
+		textElementsChanged();
 	}
 
 	@Override
@@ -9,6 +9,7 @@ public class Ruling {
 
     private static final int PERPENDICULAR_PIXEL_EXPAND_AMOUNT = 2;
     private static final int COLINEAR_OR_PARALLEL_PIXEL_EXPAND_AMOUNT = 1;
+    private static final float COLINEAR_POSITION_TOLERANCE = 0.01f;
 
     private enum SOType { VERTICAL, HRIGHT, HLEFT }
 
@@ -24,6 +25,21 @@ public class Ruling {
         this.normalize();
     }
 
+    private Ruling() {
+    }
+
+    /**
+     * Creates a normalized ruling from raw end point coordinates, without copying
+     * intermediate points. Used by the ruling extraction hot path.
+     */
+    static Ruling fromCoordinates(float x1, float y1, float x2, float y2) {
+        Ruling ruling = new Ruling();
+        ruling.start = new Point2D(x1, y1);
+        ruling.end = new Point2D(x2, y2);
+        ruling.normalize();
+        return ruling;
+    }
+
     public void normalize() {
         double angle = this.getAngle();
         if (Utils.within(angle, 0, 1) || Utils.within(angle, 180, 1)) {
@@ -39,11 +55,22 @@ public class Ruling {
     }
 
     public boolean vertical() {
-        return this.length() > 0 && Utils.feq(start.getX(), end.getX());
+        return this.hasLength() && Utils.feq(start.getX(), end.getX());
     }
 
     public boolean horizontal() {
-        return this.length() > 0 && Utils.feq(start.getY(), end.getY());
+        return this.hasLength() && Utils.feq(start.getY(), end.getY());
+    }
+
+    // length() > 0, without the square root
+    private boolean hasLength() {
+        return squaredLength() > 0;
+    }
+
+    private double squaredLength() {
+        double dx = start.getX() - end.getX();
+        double dy = start.getY() - end.getY();
+        return dx * dx + dy * dy;
     }
 
     public boolean oblique() {
@@ -91,7 +118,7 @@ public class Ruling {
     }
 
     public double length() {
-        return Math.sqrt(Math.pow(start.getX() - end.getX(), 2) + Math.pow(start.getY() - end.getY(), 2));
+        return Math.sqrt(squaredLength());
     }
 
     public boolean intersects(Rectangle area) {
@@ -144,37 +171,162 @@ public class Ruling {
         return String.format("Ruling[start=%s, end=%s]", start, end);
     }
 
+    /**
+     * Merges overlapping and nearly touching collinear rulings, with the default tolerances:
+     * rulings less than 0.01 apart across their direction are collinear, and collinear
+     * rulings separated by a gap of up to twice COLINEAR_OR_PARALLEL_PIXEL_EXPAND_AMOUNT are
+     * joined.
+     */
     public static List<Ruling> collapseOrientedRulings(List<Ruling> lines) {
-        List<Ruling> result = new ArrayList<>();
-        lines.sort(Comparator.comparing(Ruling::getTop).thenComparing(Ruling::getLeft));
+        return collapseOrientedRulings(lines, COLINEAR_POSITION_TOLERANCE, 2 * COLINEAR_OR_PARALLEL_PIXEL_EXPAND_AMOUNT);
+    }
 
-        for (Ruling nextLine : lines) {
-            if (nextLine.length() == 0) continue;
-            result.add(nextLine);
+    /**
+     * Merges collinear horizontal rulings, and collinear vertical rulings, into one ruling
+     * per visual line, so dashed lines and borders drawn piecewise come out whole.
+     *
+     * The rulings of each orientation are sorted by position across their direction (y for
+     * horizontal rulings, x for vertical ones) and split into lines of rulings less than
+     * <code>positionTolerance</code> away from the first ruling of the line. Within a line
+     * the rulings are swept by start; a ruling starting at most <code>gapTolerance</code>
+     * past the end of the current run extends it, any other starts a new run. Each run
+     * of several rulings becomes one ruling at the position of its first ruling; a ruling
+     * merged with no other is returned as is.
+     *
+     * Zero-length rulings are dropped and oblique rulings are returned unchanged, after the
+     * others. The result is sorted by top, then left.
+     */
+    public static List<Ruling> collapseOrientedRulings(List<Ruling> lines, float positionTolerance, float gapTolerance) {
+        List<Ruling> result = new ArrayList<>();
+        List<Ruling> horizontals = new ArrayList<>();
+        List<Ruling> verticals = new ArrayList<>();
+        List<Ruling> oblique = new ArrayList<>();
+        for (Ruling line : lines) {
+            if (line.length() == 0) continue;
+            if (line.horizontal()) {
+                horizontals.add(line);
+            } else if (line.vertical()) {
+                verticals.add(line);
+            } else {
+                oblique.add(line);
+            }
         }
+
+        mergeCollinear(horizontals, false, positionTolerance, gapTolerance, result);
+        mergeCollinear(verticals, true, positionTolerance, gapTolerance, result);
+        result.sort(Comparator.comparing(Ruling::getTop).thenComparing(Ruling::getLeft));
+        result.addAll(oblique);
         return result;
     }
 
-    public static Map<Point2D, Ruling[]> findIntersections(List<Ruling> horizontals, List<Ruling> verticals) {
-        Map<Point2D, Ruling[]> intersections = new HashMap<>();
+    private static void mergeCollinear(List<Ruling> rulings, boolean vertical,
+                                       float positionTolerance, float gapTolerance, List<Ruling> result) {
+        int count = rulings.size();
+        float[] positions = new float[count];
+        float[] starts = new float[count];
+        float[] ends = new float[count];
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            Ruling r = rulings.get(i);
+            positions[i] = vertical ? r.getLeft() : r.getTop();
+            starts[i] = vertical ? r.getTop() : r.getLeft();
+            ends[i] = vertical ? r.getBottom() : r.getRight();
+            keys[i] = Utils.sortKey(positions[i], i);
+        }
+        Arrays.sort(keys);
+
+        long[] line = new long[count];
+        for (int lineStart = 0; lineStart < count; ) {
+            float position = positions[(int) keys[lineStart]];
+            int lineEnd = lineStart + 1;
+            while (lineEnd < count && Math.abs(positions[(int) keys[lineEnd]] - position) < positionTolerance) {
+                lineEnd++;
+            }
 
-        for (Ruling h : horizontals) {
-            for (Ruling v : verticals) {
-                if (h.intersects(v)) {
-                    Point2D intersection = new Point2D(v.getLeft(), h.getTop());
-                    intersections.put(intersection, new Ruling[]{h, v});
+            int size = lineEnd - lineStart;
+            for (int j = 0; j < size; j++) {
+                int i = (int) keys[lineStart + j];
+                line[j] = Utils.sortKey(starts[i], i);
+            }
+            Arrays.sort(line, 0, size);
+
+            int first = (int) line[0];
+            float runStart = starts[first], runEnd = ends[first];
+            boolean merged = false;
+            for (int j = 1; j < size; j++) {
+                int i = (int) line[j];
+                if (starts[i] <= runEnd + gapTolerance) {
+                    runEnd = Math.max(runEnd, ends[i]);
+                    merged = true;
+                } else {
+                    result.add(merged ? orientedRuling(vertical, positions[first], runStart, runEnd) : rulings.get(first));
+                    first = i;
+                    runStart = starts[i];
+                    runEnd = ends[i];
+                    merged = false;
                 }
             }
+            result.add(merged ? orientedRuling(vertical, positions[first], runStart, runEnd) : rulings.get(first));
+            lineStart = lineEnd;
         }
+    }
+
+    private static Ruling orientedRuling(boolean vertical, float position, float start, float end) {
+        return vertical
+                ? fromCoordinates(position, start, position, end)
+                : fromCoordinates(start, position, end, position);
+    }
 
-        return intersections;
+    public static Map<Point2D, Ruling[]> findIntersections(List<Ruling> horizontals, List<Ruling> verticals) {
+        return RulingIntersections.find(horizontals, verticals).toMap();
     }
 
+    /**
+     * Clips the rulings to the area, borders included. Rulings that don't reach into the
+     * area, or only touch it at a point, are dropped; rulings that lie inside the area are
+     * returned as they are.
+     */
     public static List<Ruling> cropRulingsToArea(List<Ruling> rulings, Rectangle area) {
-        List<Ruling> result = new ArrayList<>();
+        List<Ruling> near = new ArrayList<>();
         for (Ruling r : rulings) {
-            if (r.intersects(area)) {
+            if (r.getLeft() <= area.getRight() && r.getRight() >= area.getLeft()
+                    && r.getTop() <= area.getBottom() && r.getBottom() >= area.getTop()) {
+                near.add(r);
+            }
+        }
+        return clipToArea(near, area);
+    }
+
+    /**
+     * Like {@link #cropRulingsToArea(List, Rectangle)}, only clipping the rulings the store
+     * finds near the area.
+     */
+    public static List<Ruling> cropRulingsToArea(RulingStore rulings, Rectangle area) {
+        return clipToArea(rulings.getRulingsNear(area), area);
+    }
+
+    private static List<Ruling> clipToArea(List<Ruling> rulings, Rectangle area) {
+        int count = rulings.size();
+        float[] lines = new float[4 * count];
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            Ruling r = rulings.get(i);
+            lines[4 * i] = r.start.getX();
+            lines[4 * i + 1] = r.start.getY();
+            lines[4 * i + 2] = r.end.getX();
+            lines[4 * i + 3] = r.end.getY();
+            ids[i] = i;
+        }
+        int kept = new CohenSutherlandClipping(area).clip(lines, ids, count);
+
+        List<Ruling> result = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            Ruling r = rulings.get(ids[i]);
+            float x1 = lines[4 * i], y1 = lines[4 * i + 1], x2 = lines[4 * i + 2], y2 = lines[4 * i + 3];
+            if (x1 == r.start.getX() && y1 == r.start.getY() && x2 == r.end.getX() && y2 == r.end.getY()) {
                 result.add(r);
+            } else if (x1 != x2 || y1 != y2) {
+                result.add(fromCoordinates(x1, y1, x2, y2));
             }
         }
         return result;
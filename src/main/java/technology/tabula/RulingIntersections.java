@@ -0,0 +1,335 @@
+package technology.tabula;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Crossings of horizontal and vertical rulings, found with a sweep over the y axis.
+ *
+ * The crossings are kept in parallel arrays: crossing i lies at (<code>getX(i)</code>,
+ * <code>getY(i)</code>), where the horizontal ruling at index <code>getHorizontal(i)</code>
+ * of the list given to {@link #find} crosses the vertical ruling at index
+ * <code>getVertical(i)</code>. Like {@link Ruling#intersectionPoint}, the crossing point is
+ * the left of the vertical ruling and the top of the horizontal one.
+ *
+ * Crossing points are compared rounded to hundredths, as {@link PackedPointMap} keys: the
+ * crossings are sorted by rounded y then rounded x, and when several pairs of rulings cross
+ * at the same rounded point only the pair that comes last in the order of the input lists
+ * is kept.
+ */
+public class RulingIntersections {
+
+    // relative to the largest coordinate, well above the rounding error of Ruling.intersects()
+    private static final float CANDIDATE_SLACK = 1e-6f;
+
+    private final List<Ruling> horizontals;
+    private final List<Ruling> verticals;
+
+    private int size = 0;
+    private float[] xs;
+    private float[] ys;
+    private int[] horizontalIds;
+    private int[] verticalIds;
+    // crossing index by point
+    private PackedPointMap index;
+
+    private RulingIntersections(List<Ruling> horizontals, List<Ruling> verticals, int capacity) {
+        this.horizontals = horizontals;
+        this.verticals = verticals;
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+        this.horizontalIds = new int[capacity];
+        this.verticalIds = new int[capacity];
+        this.index = new PackedPointMap();
+    }
+
+    /**
+     * Finds the crossings of <code>horizontals</code> and <code>verticals</code>.
+     *
+     * Horizontal rulings are visited by their top. The vertical rulings spanning that y are
+     * kept in a bit set indexed by their rank along the x axis, so each horizontal ruling
+     * only looks at the active vertical rulings within its own x range. Every candidate
+     * pair is confirmed with {@link Ruling#intersects(Ruling)}.
+     */
+    public static RulingIntersections find(List<Ruling> horizontals, List<Ruling> verticals) {
+        int hCount = horizontals.size(), vCount = verticals.size();
+        RulingIntersections result = new RulingIntersections(horizontals, verticals, Math.max(16, hCount + vCount));
+        if (hCount == 0 || vCount == 0) {
+            return result;
+        }
+
+        // Ruling.intersects() works on rounded products and accepts crossings a few ulps of
+        // the ruling lengths outside the rulings, so candidates are searched with that slack
+        float extent = 0;
+        for (Ruling r : horizontals) {
+            extent = Math.max(extent, Math.max(Math.abs(r.getLeft()), Math.abs(r.getRight())));
+        }
+        for (Ruling r : verticals) {
+            extent = Math.max(extent, Math.max(Math.abs(r.getTop()), Math.abs(r.getBottom())));
+        }
+        float slack = extent * CANDIDATE_SLACK + Float.MIN_NORMAL;
+
+        // vertical rulings by left, and their rank in that order
+        float[] vLefts = new float[vCount];
+        float maxVerticalWidth = 0;
+        int[] byLeft = sortedIndexes(verticals, Ruling::getLeft);
+        int[] rankOf = new int[vCount];
+        for (int rank = 0; rank < vCount; rank++) {
+            Ruling v = verticals.get(byLeft[rank]);
+            vLefts[rank] = v.getLeft();
+            rankOf[byLeft[rank]] = rank;
+            maxVerticalWidth = Math.max(maxVerticalWidth, v.getRight() - v.getLeft());
+        }
+        int[] byTop = sortedIndexes(verticals, Ruling::getTop);
+        float[] vTops = new float[vCount];
+        for (int i = 0; i < vCount; i++) {
+            vTops[i] = verticals.get(byTop[i]).getTop();
+        }
+        int[] byBottom = sortedIndexes(verticals, Ruling::getBottom);
+        int[] hByTop = sortedIndexes(horizontals, Ruling::getTop);
+
+        long[] active = new long[(vCount + 63) >>> 6];
+        int inserted = 0, removed = 0;
+        int groupStart = 0;
+        int groupTop = 0;
+
+        for (int hi : hByTop) {
+            Ruling h = horizontals.get(hi);
+            float top = h.getTop();
+            if (result.size == groupStart || Utils.toHundredths(top) != groupTop) {
+                result.sortGroup(groupStart);
+                groupStart = result.size;
+                groupTop = Utils.toHundredths(top);
+            }
+
+            // active: the vertical rulings with top <= h.top <= bottom, give or take the slack
+            while (inserted < vCount && vTops[inserted] <= top + slack) {
+                int rank = rankOf[byTop[inserted++]];
+                active[rank >>> 6] |= 1L << rank;
+            }
+            while (removed < vCount && verticals.get(byBottom[removed]).getBottom() < top - slack) {
+                int rank = rankOf[byBottom[removed++]];
+                active[rank >>> 6] &= ~(1L << rank);
+            }
+
+            int from = lowerBound(vLefts, h.getLeft() - maxVerticalWidth - slack);
+            int to = upperBound(vLefts, h.getRight() + slack);
+            for (int rank = nextSetBit(active, from, to); rank >= 0; rank = nextSetBit(active, rank + 1, to)) {
+                int vi = byLeft[rank];
+                Ruling v = verticals.get(vi);
+                if (h.intersects(v)) {
+                    result.add(v.getLeft(), top, hi, vi);
+                }
+            }
+
+            // a ruling that isn't exactly horizontal may also reach vertical rulings starting below its top
+            if (h.getBottom() > top) {
+                for (int i = upperBound(vTops, top + slack); i < vCount && vTops[i] <= h.getBottom() + slack; i++) {
+                    int vi = byTop[i];
+                    Ruling v = verticals.get(vi);
+                    if (v.getLeft() <= h.getRight() + slack && v.getRight() >= h.getLeft() - slack && h.intersects(v)) {
+                        result.add(v.getLeft(), top, hi, vi);
+                    }
+                }
+            }
+        }
+        result.sortGroup(groupStart);
+        result.removeDuplicates();
+        result.index = new PackedPointMap(result.size);
+        for (int i = 0; i < result.size; i++) {
+            result.index.put(result.xs[i], result.ys[i], i);
+        }
+        return result;
+    }
+
+    private interface Coordinate {
+        float of(Ruling r);
+    }
+
+    private static int[] sortedIndexes(List<Ruling> rulings, Coordinate coordinate) {
+        long[] keys = new long[rulings.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Utils.sortKey(coordinate.of(rulings.get(i)), i);
+        }
+        Arrays.sort(keys);
+        int[] indexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            indexes[i] = (int) keys[i];
+        }
+        return indexes;
+    }
+
+    // first index with values[i] >= value
+    private static int lowerBound(float[] values, float value) {
+        int lo = 0, hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // first index with values[i] > value
+    private static int upperBound(float[] values, float value) {
+        int lo = 0, hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // first set bit in [from, to), or -1
+    private static int nextSetBit(long[] bits, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long w = bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(w);
+                return bit < to ? bit : -1;
+            }
+            if (++word << 6 >= to) {
+                return -1;
+            }
+            w = bits[word];
+        }
+    }
+
+    private void add(float x, float y, int horizontal, int vertical) {
+        if (size == xs.length) {
+            int capacity = xs.length * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            horizontalIds = Arrays.copyOf(horizontalIds, capacity);
+            verticalIds = Arrays.copyOf(verticalIds, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        horizontalIds[size] = horizontal;
+        verticalIds[size] = vertical;
+        size++;
+    }
+
+    /**
+     * Sorts the crossings from <code>start</code> on, which all share their rounded y, by
+     * rounded x.
+     */
+    private void sortGroup(int start) {
+        int count = size - start;
+        if (count < 2) {
+            return;
+        }
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) Utils.toHundredths(xs[start + i]) << 32) | (start + i);
+        }
+        Arrays.sort(keys);
+
+        float[] x = new float[count];
+        int[] h = new int[count], v = new int[count];
+        for (int i = 0; i < count; i++) {
+            int c = (int) keys[i];
+            x[i] = xs[c];
+            h[i] = horizontalIds[c];
+            v[i] = verticalIds[c];
+        }
+        System.arraycopy(x, 0, xs, start, count);
+        System.arraycopy(h, 0, horizontalIds, start, count);
+        System.arraycopy(v, 0, verticalIds, start, count);
+    }
+
+    // of the crossings sharing a rounded point keeps the one a nested loop over the input
+    // lists would find last: greatest horizontal index, then greatest vertical index
+    private void removeDuplicates() {
+        int kept = 0;
+        for (int i = 0; i < size; ) {
+            int last = i;
+            long key = PackedPointMap.key(xs[i], ys[i]);
+            int j = i + 1;
+            while (j < size && PackedPointMap.key(xs[j], ys[j]) == key) {
+                if (horizontalIds[j] > horizontalIds[last]
+                        || (horizontalIds[j] == horizontalIds[last] && verticalIds[j] > verticalIds[last])) {
+                    last = j;
+                }
+                j++;
+            }
+            xs[kept] = xs[last];
+            ys[kept] = ys[last];
+            horizontalIds[kept] = horizontalIds[last];
+            verticalIds[kept] = verticalIds[last];
+            kept++;
+            i = j;
+        }
+        size = kept;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float getX(int i) {
+        return xs[i];
+    }
+
+    public float getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Index of the horizontal ruling of crossing i in the list given to {@link #find}.
+     */
+    public int getHorizontal(int i) {
+        return horizontalIds[i];
+    }
+
+    /**
+     * Index of the vertical ruling of crossing i in the list given to {@link #find}.
+     */
+    public int getVertical(int i) {
+        return verticalIds[i];
+    }
+
+    public Ruling getHorizontalRuling(int i) {
+        return horizontals.get(horizontalIds[i]);
+    }
+
+    public Ruling getVerticalRuling(int i) {
+        return verticals.get(verticalIds[i]);
+    }
+
+    public Point2D getPoint(int i) {
+        return new Point2D(xs[i], ys[i]);
+    }
+
+    /**
+     * Index of the crossing at (x, y), rounded to hundredths, or -1.
+     */
+    public int indexOf(float x, float y) {
+        return index.get(x, y);
+    }
+
+    /**
+     * The crossings as returned by {@link Ruling#findIntersections}: each point mapped to its
+     * horizontal and vertical ruling.
+     */
+    public Map<Point2D, Ruling[]> toMap() {
+        Map<Point2D, Ruling[]> intersections = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            intersections.put(getPoint(i), new Ruling[]{getHorizontalRuling(i), getVerticalRuling(i)});
+        }
+        return intersections;
+    }
+}
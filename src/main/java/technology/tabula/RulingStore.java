@@ -0,0 +1,240 @@
+package technology.tabula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rulings of a page, classified once when they are added. A ruling that is
+ * {@link Ruling#horizontal()} is stored as horizontal, otherwise one that is
+ * {@link Ruling#vertical()} as vertical, like the extractors classify them; any other
+ * ruling is only part of {@link #getRulings()}.
+ *
+ * Each orientation keeps its rulings in insertion order, and on the first range query
+ * also in primitive arrays sorted by position (top of a horizontal ruling, left of a
+ * vertical one), so range queries are answered by binary search. The arrays hold the
+ * coordinates the rulings had when they were sorted: they are sorted again after a
+ * ruling is added, not after a ruling is moved.
+ */
+public class RulingStore {
+
+    private final List<Ruling> rulings = new ArrayList<>();
+    private final Orientation horizontals = new Orientation(false);
+    private final Orientation verticals = new Orientation(true);
+    // insertion indexes of the rulings that are neither horizontal nor vertical
+    private int[] others = new int[8];
+    private int otherCount = 0;
+
+    public RulingStore() {
+    }
+
+    public RulingStore(List<Ruling> rulings) {
+        if (rulings != null) {
+            for (Ruling r : rulings) {
+                add(r);
+            }
+        }
+    }
+
+    public void add(Ruling ruling) {
+        int id = rulings.size();
+        rulings.add(ruling);
+        if (ruling.horizontal()) {
+            horizontals.add(ruling, id);
+        } else if (ruling.vertical()) {
+            verticals.add(ruling, id);
+        } else {
+            if (otherCount == others.length) {
+                others = Arrays.copyOf(others, otherCount * 2);
+            }
+            others[otherCount++] = id;
+        }
+    }
+
+    public int size() {
+        return rulings.size();
+    }
+
+    /**
+     * All the rulings, in insertion order.
+     */
+    public List<Ruling> getRulings() {
+        return Collections.unmodifiableList(rulings);
+    }
+
+    /**
+     * The horizontal rulings, in insertion order.
+     */
+    public List<Ruling> getHorizontals() {
+        return horizontals.view;
+    }
+
+    /**
+     * The vertical rulings, in insertion order.
+     */
+    public List<Ruling> getVerticals() {
+        return verticals.view;
+    }
+
+    /**
+     * The rulings whose bounding box intersects the area, borders included, in insertion
+     * order. Horizontal and vertical rulings are found by range queries, the others by a
+     * scan.
+     */
+    public List<Ruling> getRulingsNear(Rectangle area) {
+        float left = area.getLeft(), top = area.getTop(), right = area.getRight(), bottom = area.getBottom();
+        IdList found = new IdList();
+        horizontals.overlapping(top, bottom, left, right, found);
+        verticals.overlapping(left, right, top, bottom, found);
+        for (int i = 0; i < otherCount; i++) {
+            Ruling r = rulings.get(others[i]);
+            if (r.getLeft() <= right && r.getRight() >= left && r.getTop() <= bottom && r.getBottom() >= top) {
+                found.add(others[i]);
+            }
+        }
+
+        Arrays.sort(found.ids, 0, found.size);
+        List<Ruling> result = new ArrayList<>(found.size);
+        for (int i = 0; i < found.size; i++) {
+            result.add(rulings.get(found.ids[i]));
+        }
+        return result;
+    }
+
+    private static final class IdList {
+        int[] ids = new int[16];
+        int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Rulings of one orientation. Once sorted, ruling i by position is
+     * <code>rulings.get(byPosition[i])</code>, reaches across its direction from
+     * <code>positions[i]</code> to <code>positionEnds[i]</code> (the two differ for rulings
+     * that are only nearly horizontal or vertical) and spans <code>starts[i]</code> to
+     * <code>ends[i]</code> along it.
+     */
+    private static final class Orientation {
+
+        private final boolean vertical;
+        private final List<Ruling> rulings = new ArrayList<>();
+        private final List<Ruling> view = Collections.unmodifiableList(rulings);
+        // insertion index in the store of each ruling
+        private int[] storeIds = new int[8];
+
+        private boolean sorted = false;
+        private int[] byPosition;
+        private float[] positions;
+        private float[] positionEnds;
+        private float[] starts;
+        private float[] ends;
+        // largest positionEnds[i] - positions[i]
+        private float maxSpread;
+
+        Orientation(boolean vertical) {
+            this.vertical = vertical;
+        }
+
+        synchronized void add(Ruling ruling, int storeId) {
+            if (rulings.size() == storeIds.length) {
+                storeIds = Arrays.copyOf(storeIds, storeIds.length * 2);
+            }
+            storeIds[rulings.size()] = storeId;
+            rulings.add(ruling);
+            sorted = false;
+        }
+
+        private synchronized void sort() {
+            if (sorted) {
+                return;
+            }
+            int count = rulings.size();
+            float[] position = new float[count], start = new float[count];
+            for (int i = 0; i < count; i++) {
+                Ruling r = rulings.get(i);
+                position[i] = vertical ? r.getLeft() : r.getTop();
+                start[i] = vertical ? r.getTop() : r.getLeft();
+            }
+
+            byPosition = order(position);
+            positions = new float[count];
+            positionEnds = new float[count];
+            starts = new float[count];
+            ends = new float[count];
+            maxSpread = 0;
+            for (int i = 0; i < count; i++) {
+                Ruling r = rulings.get(byPosition[i]);
+                positions[i] = position[byPosition[i]];
+                positionEnds[i] = vertical ? r.getRight() : r.getBottom();
+                starts[i] = start[byPosition[i]];
+                ends[i] = vertical ? r.getBottom() : r.getRight();
+                maxSpread = Math.max(maxSpread, positionEnds[i] - positions[i]);
+            }
+            sorted = true;
+        }
+
+        // indexes ordered by value, then by index
+        private static int[] order(float[] values) {
+            int count = values.length;
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = Utils.sortKey(values[i], i);
+            }
+            Arrays.sort(keys);
+            int[] indexes = new int[count];
+            for (int i = 0; i < count; i++) {
+                indexes[i] = (int) keys[i];
+            }
+            return indexes;
+        }
+
+        // adds the store ids of the rulings reaching [from, to] across their direction and
+        // [low, high] along it
+        synchronized void overlapping(float from, float to, float low, float high, IdList found) {
+            sort();
+            // only rulings positioned at most maxSpread before from can reach it; the margin
+            // is doubled so rounding the bound never leaves one of them out
+            int hi = upperBound(positions, to);
+            for (int i = lowerBound(positions, from - 2 * maxSpread); i < hi; i++) {
+                if (positionEnds[i] >= from && starts[i] <= high && ends[i] >= low) {
+                    found.add(storeIds[byPosition[i]]);
+                }
+            }
+        }
+    }
+
+    // first index with values[i] >= value
+    private static int lowerBound(float[] values, float value) {
+        int lo = 0, hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // first index with values[i] > value
+    private static int upperBound(float[] values, float value) {
+        int lo = 0, hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,42 @@
+package technology.tabula;
+
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * Spatial index backed by the JTS STRtree. As with the STRtree itself, rectangles can't be
+ * added once the index has been queried.
+ */
+class STRtreeSpatialIndex<T extends Rectangle> extends AbstractRectangleSpatialIndex<T> {
+
+    private final STRtree si = new STRtree();
+
+    STRtreeSpatialIndex(List<T> inReadingOrder) {
+        super(inReadingOrder);
+        for (int id = 0; id < rectangles.size(); id++) {
+            insert(id);
+        }
+    }
+
+    private void insert(int id) {
+        si.insert(new Envelope(left(id), right(id), bottom(id), top(id)), id);
+    }
+
+    @Override
+    protected void added(int id, T te) {
+        insert(id);
+    }
+
+    @Override
+    protected int[] query(float left, float top, float right, float bottom) {
+        List<?> found = si.query(new Envelope(left, right, top, bottom));
+        int[] ids = new int[found.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (Integer) found.get(i);
+        }
+        return ids;
+    }
+
+}
@@ -12,7 +12,7 @@ import technology.tabula.extractors.ExtractionAlgorithm;
 public class TableWithRulingLines extends Table {
 
     List<Ruling> verticalRulings, horizontalRulings;
-    RectangleSpatialIndex<Cell> si = new RectangleSpatialIndex<>();
+    RectangleSpatialIndex<Cell> si = RectangleSpatialIndex.create();
     
     public TableWithRulingLines(Rectangle area, List<Cell> cells, List<Ruling> horizontalRulings, List<Ruling> verticalRulings, ExtractionAlgorithm extractionAlgorithm, int pageNumber) {
         super(extractionAlgorithm);
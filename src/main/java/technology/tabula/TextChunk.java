@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Collections;
-import java.util.HashMap;
 import java.text.Normalizer;
 
 @SuppressWarnings("serial")
@@ -12,6 +11,10 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
     public static final TextChunk EMPTY = new TextChunk(0, 0, 0, 0);
 //    List<TextElement> textElements = new ArrayList<>();
 
+    // getText() of the first textSize text elements, null once they changed
+    private String text;
+    private int textSize;
+
     public TextChunk(float top, float left, float width, float height) {
         super(top, left, width, height);
     }
@@ -32,33 +35,51 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
         LTR, NONE, RTL
     }
 
-    // I hate Java so bad.
-    // we're making this HashMap static! which requires really funky initialization per http://stackoverflow.com/questions/6802483/how-to-directly-initialize-a-hashmap-in-a-literal-way/6802502#6802502
-    private static HashMap<Byte, DirectionalityOptions> directionalities;
+    // directionality option of each bidi character type, indexed by the unsigned byte of the
+    // type; null for the types missing below
+    private static final DirectionalityOptions[] directionalities = new DirectionalityOptions[256];
 
     static {
-        directionalities = new HashMap<>();
         // BCT = bidirectional character type
-        directionalities.put(java.lang.Character.DIRECTIONALITY_ARABIC_NUMBER, DirectionalityOptions.LTR);               // Weak BCT    "AN" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_BOUNDARY_NEUTRAL, DirectionalityOptions.NONE);            // Weak BCT    "BN" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_COMMON_NUMBER_SEPARATOR, DirectionalityOptions.LTR);     // Weak BCT    "CS" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_EUROPEAN_NUMBER, DirectionalityOptions.LTR);             // Weak BCT    "EN" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_EUROPEAN_NUMBER_SEPARATOR, DirectionalityOptions.LTR);   // Weak BCT    "ES" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_EUROPEAN_NUMBER_TERMINATOR, DirectionalityOptions.LTR);  // Weak BCT    "ET" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_LEFT_TO_RIGHT, DirectionalityOptions.LTR);              // Strong BCT  "L" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_LEFT_TO_RIGHT_EMBEDDING, DirectionalityOptions.LTR);     // Strong BCT  "LRE" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_LEFT_TO_RIGHT_OVERRIDE, DirectionalityOptions.LTR);      // Strong BCT  "LRO" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_NONSPACING_MARK, DirectionalityOptions.NONE);             // Weak BCT    "NSM" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_OTHER_NEUTRALS, DirectionalityOptions.NONE);              // Neutral BCT "ON" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_PARAGRAPH_SEPARATOR, DirectionalityOptions.NONE);         // Neutral BCT "B" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_POP_DIRECTIONAL_FORMAT, DirectionalityOptions.NONE);      // Weak BCT    "PDF" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT, DirectionalityOptions.RTL);              // Strong BCT  "R" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC, DirectionalityOptions.RTL);       // Strong BCT  "AL" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT_EMBEDDING, DirectionalityOptions.RTL);    // Strong BCT  "RLE" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT_OVERRIDE, DirectionalityOptions.RTL);     // Strong BCT  "RLO" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_SEGMENT_SEPARATOR, DirectionalityOptions.RTL);          // Neutral BCT "S" in the Unicode specification.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_UNDEFINED, DirectionalityOptions.NONE);                   // Undefined BCT.
-        directionalities.put(java.lang.Character.DIRECTIONALITY_WHITESPACE, DirectionalityOptions.NONE);                  // Neutral BCT "WS" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_ARABIC_NUMBER & 0xff] = DirectionalityOptions.LTR;               // Weak BCT    "AN" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_BOUNDARY_NEUTRAL & 0xff] = DirectionalityOptions.NONE;            // Weak BCT    "BN" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_COMMON_NUMBER_SEPARATOR & 0xff] = DirectionalityOptions.LTR;     // Weak BCT    "CS" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_EUROPEAN_NUMBER & 0xff] = DirectionalityOptions.LTR;             // Weak BCT    "EN" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_EUROPEAN_NUMBER_SEPARATOR & 0xff] = DirectionalityOptions.LTR;   // Weak BCT    "ES" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_EUROPEAN_NUMBER_TERMINATOR & 0xff] = DirectionalityOptions.LTR;  // Weak BCT    "ET" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_LEFT_TO_RIGHT & 0xff] = DirectionalityOptions.LTR;              // Strong BCT  "L" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_LEFT_TO_RIGHT_EMBEDDING & 0xff] = DirectionalityOptions.LTR;     // Strong BCT  "LRE" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_LEFT_TO_RIGHT_OVERRIDE & 0xff] = DirectionalityOptions.LTR;      // Strong BCT  "LRO" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_NONSPACING_MARK & 0xff] = DirectionalityOptions.NONE;             // Weak BCT    "NSM" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_OTHER_NEUTRALS & 0xff] = DirectionalityOptions.NONE;              // Neutral BCT "ON" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_PARAGRAPH_SEPARATOR & 0xff] = DirectionalityOptions.NONE;         // Neutral BCT "B" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_POP_DIRECTIONAL_FORMAT & 0xff] = DirectionalityOptions.NONE;      // Weak BCT    "PDF" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT & 0xff] = DirectionalityOptions.RTL;              // Strong BCT  "R" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC & 0xff] = DirectionalityOptions.RTL;       // Strong BCT  "AL" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT_EMBEDDING & 0xff] = DirectionalityOptions.RTL;    // Strong BCT  "RLE" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_RIGHT_TO_LEFT_OVERRIDE & 0xff] = DirectionalityOptions.RTL;     // Strong BCT  "RLO" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_SEGMENT_SEPARATOR & 0xff] = DirectionalityOptions.RTL;          // Neutral BCT "S" in the Unicode specification.
+        directionalities[java.lang.Character.DIRECTIONALITY_UNDEFINED & 0xff] = DirectionalityOptions.NONE;                   // Undefined BCT.
+        directionalities[java.lang.Character.DIRECTIONALITY_WHITESPACE & 0xff] = DirectionalityOptions.NONE;                  // Neutral BCT "WS" in the Unicode specification.
+    }
+
+    private static DirectionalityOptions directionality(char c) {
+        return directionalities[Character.getDirectionality(c) & 0xff];
+    }
+
+    /**
+     * Whether every character of the text is LTR or neutral, so that
+     * {@link #groupByDirectionality(Boolean)} returns the elements of a chunk of such texts
+     * unchanged.
+     */
+    public static boolean isLeftToRight(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            DirectionalityOptions d = directionality(text.charAt(i));
+            if (d != DirectionalityOptions.LTR && d != DirectionalityOptions.NONE) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -85,12 +106,12 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
             // System.out.println(te.getText() + " is " + Character.getDirectionality(te.getText().charAt(0) ) + " " + directionalities.get(Character.getDirectionality(te.getText().charAt(0) )));
             if (buff.size() == 0) {
                 buff.add(te);
-                buffDirectionality = directionalities.get(Character.getDirectionality(te.getText().charAt(0)));
+                buffDirectionality = directionality(te.getText().charAt(0));
             } else {
                 if (buffDirectionality == DirectionalityOptions.NONE) {
-                    buffDirectionality = directionalities.get(Character.getDirectionality(te.getText().charAt(0)));
+                    buffDirectionality = directionality(te.getText().charAt(0));
                 }
-                DirectionalityOptions teDirectionality = directionalities.get(Character.getDirectionality(te.getText().charAt(0)));
+                DirectionalityOptions teDirectionality = directionality(te.getText().charAt(0));
 
                 if (teDirectionality == buffDirectionality || teDirectionality == DirectionalityOptions.NONE) {
                     if (Character.getDirectionality(te.getText().charAt(0)) == java.lang.Character.DIRECTIONALITY_WHITESPACE && (buffDirectionality == (isLtrDominant ? DirectionalityOptions.RTL : DirectionalityOptions.LTR))) {
@@ -106,7 +127,7 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
                     chunks.add(buff);
 
                     // and start a new one
-                    buffDirectionality = directionalities.get(Character.getDirectionality(te.getText().charAt(0)));
+                    buffDirectionality = directionality(te.getText().charAt(0));
                     buff = new ArrayList<>();
                     buff.add(te);
                 }
@@ -157,6 +178,12 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
     public void add(TextElement textElement) {
         this.textElements.add(textElement);
         this.merge(textElement);
+        textElementsChanged();
+    }
+
+    @Override
+    protected void textElementsChanged() {
+        text = null;
     }
 
     public void add(List<TextElement> elements) {
@@ -165,9 +192,17 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
         }
     }
 
+    /**
+     * The text of the elements, NFKC-normalized and trimmed. It is computed once and kept
+     * until elements are added or replaced; text that is all ASCII is already normalized.
+     */
     @Override
     public String getText() {
-        if (this.textElements.size() == 0) {
+        int size = this.textElements.size();
+        if (text != null && textSize == size) {
+            return text;
+        }
+        if (size == 0) {
             return "";
         }
 
@@ -175,7 +210,22 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
         for (TextElement te : this.textElements) {
             sb.append(te.getText());
         }
-        return Normalizer.normalize(sb.toString(), Normalizer.Form.NFKC).trim();
+        String s = sb.toString();
+        if (!isAscii(s)) {
+            s = Normalizer.normalize(s, Normalizer.Form.NFKC);
+        }
+        text = s.trim();
+        textSize = size;
+        return text;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -220,58 +270,76 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
      * For example, if the TextChunk contains this string of characters: "1234xxxxx56xx"
      * and c == 'x' and minRunLength == 4, this method will return a list of TextChunk
      * such that: ["1234", "56xx"]
+     *
+     * The TextElements are scanned as index ranges: a range is split at the first run long
+     * enough, and only the pieces that are kept become TextChunks.
      */
     public List<TextChunk> squeeze(Character c, int minRunLength) {
-        Character currentChar, lastChar = null;
-        int subSequenceLength = 0, subSequenceStart = 0;
-        TextChunk[] t;
         List<TextChunk> rv = new ArrayList<>();
-
-        for (int i = 0; i < this.getTextElements().size(); i++) {
-            TextElement textElement = this.getTextElements().get(i);
-            String text = textElement.getText();
-            if (text.length() > 1) {
-                currentChar = text.trim().charAt(0);
-            } else {
-                currentChar = text.charAt(0);
-            }
-
-
-            if (lastChar != null && currentChar.equals(c) && lastChar.equals(currentChar)) {
-                subSequenceLength++;
-            } else {
-                if (((lastChar != null && !lastChar.equals(currentChar)) || i + 1 == this.getTextElements().size()) && subSequenceLength >= minRunLength) {
-
-                    if (subSequenceStart == 0 && subSequenceLength <= this.getTextElements().size() - 1) {
-                        t = this.splitAt(subSequenceLength);
-                    } else {
-                        t = this.splitAt(subSequenceStart);
-                        rv.add(t[0]);
+        int size = this.textElements.size();
+        // squeezes [from, size), then what is left of it after a split
+        int from = 0;
+        while (true) {
+            int count = size - from;
+            char lastChar = 0;
+            int subSequenceLength = 0, subSequenceStart = 0;
+            int next = -1;
+
+            for (int i = 0; i < count; i++) {
+                char currentChar = firstChar(this.textElements.get(from + i));
+
+                if (i > 0 && c != null && currentChar == c && lastChar == currentChar) {
+                    subSequenceLength++;
+                } else {
+                    if (((i > 0 && lastChar != currentChar) || i + 1 == count) && subSequenceLength >= minRunLength) {
+                        if (subSequenceStart == 0 && subSequenceLength <= count - 1) {
+                            // the range starts with the run: drop it
+                            checkSplit(subSequenceLength, count);
+                            next = from + subSequenceLength;
+                        } else {
+                            checkSplit(subSequenceStart, count);
+                            rv.add(subChunk(from, from + subSequenceStart));
+                            next = from + subSequenceStart;
+                        }
+                        break;
                     }
-                    rv.addAll(t[1].squeeze(c, minRunLength)); // Lo and behold, recursion.
-                    break;
-
+                    subSequenceLength = 1;
+                    subSequenceStart = i;
                 }
-                subSequenceLength = 1;
-                subSequenceStart = i;
+                lastChar = currentChar;
             }
-            lastChar = currentChar;
-        }
 
+            if (next >= 0) {
+                from = next;
+                continue;
+            }
 
-        if (rv.isEmpty()) { // no splits occurred, hence this.squeeze() == [this]
-            if (subSequenceLength >= minRunLength && subSequenceLength < this.textElements.size()) {
-                TextChunk[] chunks = this.splitAt(subSequenceStart);
-                rv.add(chunks[0]);
+            // no splits occurred, the range is kept whole or without its trailing run
+            if (subSequenceLength >= minRunLength && subSequenceLength < count) {
+                checkSplit(subSequenceStart, count);
+                rv.add(subChunk(from, from + subSequenceStart));
             } else {
-                rv.add(this);
+                rv.add(from == 0 ? this : subChunk(from, size));
             }
+            return rv;
         }
+    }
 
-        return rv;
+    private static char firstChar(TextElement textElement) {
+        String text = textElement.getText();
+        return text.length() > 1 ? text.trim().charAt(0) : text.charAt(0);
+    }
 
+    // same bounds as splitAt(i) on a chunk of count elements
+    private static void checkSplit(int i, int count) {
+        if (i < 1 || i >= count) {
+            throw new IllegalArgumentException();
+        }
     }
 
+    private TextChunk subChunk(int from, int to) {
+        return new TextChunk(this.textElements.subList(from, to));
+    }
 
     @Override
     public int hashCode() {
@@ -330,13 +398,12 @@ public class TextChunk extends RectangularTextContainer<TextElement> {
 
         float bbwidth = Rectangle.boundingBoxOf(textChunks).width;
 
-        Line l = new Line();
-        l.addTextChunk(textChunks.get(0));
-        textChunks.remove(0);
-        lines.add(l);
+        Line last = new Line();
+        last.addTextChunk(textChunks.get(0));
+        lines.add(last);
 
-        Line last = lines.get(lines.size() - 1);
-        for (TextChunk te : textChunks) {
+        for (int i = 1; i < textChunks.size(); i++) {
+            TextChunk te = textChunks.get(i);
             if (last.verticalOverlapRatio(te) < 0.1) {
                 if (last.width / bbwidth > 0.9 && TextChunk.allSameChar(last.getTextElements())) {
                     lines.remove(lines.size() - 1);
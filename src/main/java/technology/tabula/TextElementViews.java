@@ -0,0 +1,85 @@
+package technology.tabula;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The glyphs of a {@link PageTextBuffer} as a read-only list of TextElements in reading
+ * order (see {@link ReadingOrder}). The TextElement view of a glyph is created the first
+ * time it is read and kept; the coordinates can be read through {@link RectangleBounds}
+ * without creating any view.
+ *
+ * Once every view exists the list lets the buffer go, and answers from the views alone.
+ */
+final class TextElementViews extends AbstractList<TextElement> implements RandomAccess, RectangleBounds {
+
+    // released once every view exists
+    private volatile PageTextBuffer buffer;
+    // buffer position of the glyph at each index
+    private final int[] glyphs;
+    private final TextElement[] views;
+    private int created = 0;
+
+    TextElementViews(PageTextBuffer buffer) {
+        int count = buffer.size();
+        float[] tops = new float[count], bottoms = new float[count], lefts = new float[count];
+        for (int i = 0; i < count; i++) {
+            tops[i] = buffer.getTop(i);
+            bottoms[i] = buffer.getBottom(i);
+            lefts[i] = buffer.getLeft(i);
+        }
+        // glyphs are never RTL-dominant (see TextElement), only their geometry orders them
+        this.glyphs = ReadingOrder.order(tops, bottoms, lefts, null, count);
+        this.views = new TextElement[count];
+        this.buffer = count == 0 ? null : buffer;
+    }
+
+    @Override
+    public synchronized TextElement get(int i) {
+        TextElement te = views[i];
+        if (te == null) {
+            te = buffer.getTextElement(glyphs[i]);
+            views[i] = te;
+            if (++created == views.length) {
+                buffer = null;
+            }
+        }
+        return te;
+    }
+
+    @Override
+    public int size() {
+        return views.length;
+    }
+
+    /**
+     * Whether every view exists, so the buffer is no longer referenced.
+     */
+    boolean isComplete() {
+        return buffer == null;
+    }
+
+    @Override
+    public float getLeft(int i) {
+        PageTextBuffer b = buffer;
+        return b != null ? b.getLeft(glyphs[i]) : views[i].getLeft();
+    }
+
+    @Override
+    public float getTop(int i) {
+        PageTextBuffer b = buffer;
+        return b != null ? b.getTop(glyphs[i]) : views[i].getTop();
+    }
+
+    @Override
+    public float getRight(int i) {
+        PageTextBuffer b = buffer;
+        return b != null ? b.getRight(glyphs[i]) : views[i].getRight();
+    }
+
+    @Override
+    public float getBottom(int i) {
+        PageTextBuffer b = buffer;
+        return b != null ? b.getBottom(glyphs[i]) : views[i].getBottom();
+    }
+}
@@ -7,8 +7,11 @@ import com.tom_roush.pdfbox.pdmodel.font.PDFontDescriptor;
 import com.tom_roush.pdfbox.pdmodel.font.PDType3Font;
 import com.tom_roush.pdfbox.text.PDFTextStripper;
 import com.tom_roush.pdfbox.text.TextPosition;
+import com.tom_roush.pdfbox.util.Matrix;
+import com.tom_roush.pdfbox.util.Vector;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,24 +22,61 @@ public class TextStripper extends PDFTextStripper {
     private static final float MAX_BLANK_FONT_SIZE = 40.0f;
     private static final float MIN_BLANK_FONT_SIZE = 2.0f;
     private final PDDocument document;
-    private final ArrayList<TextElement> textElements;
-    private final RectangleSpatialIndex<TextElement> spatialIndex;
+    private final int pageNumber;
+    private final PageTextBuffer textBuffer;
+    private final ObjectExtractorStreamEngine rulingCollector;
+    // TextElement views of textBuffer, created on request
+    private List<TextElement> textElements;
+    private RectangleSpatialIndex<TextElement> spatialIndex;
+    private final FontMetricsCache fontMetricsCache;
     private float minCharWidth = Float.MAX_VALUE;
     private float minCharHeight = Float.MAX_VALUE;
     private float totalHeight = 0.0f;
     private int countHeight = 0;
 
     public TextStripper(PDDocument document, int pageNumber) throws IOException {
+        this(document, pageNumber, null);
+    }
+
+    /**
+     * Creates a stripper that also feeds the path operators of the page to
+     * {@code rulingCollector}, so text and rulings come out of a single pass
+     * over the page's content stream.
+     */
+    TextStripper(PDDocument document, int pageNumber, ObjectExtractorStreamEngine rulingCollector) throws IOException {
         super();
         this.document = document;
-        this.setStartPage(pageNumber);
-        this.setEndPage(pageNumber);
-        this.textElements = new ArrayList<>();
-        this.spatialIndex = new RectangleSpatialIndex<>();
+        this.pageNumber = pageNumber;
+        // processPage() only runs for pages within [startPage, endPage] of PDFTextStripper's
+        // own page counter, which stays at 0 because we never go through processPages()
+        this.setStartPage(0);
+        this.setEndPage(0);
+        this.textBuffer = new PageTextBuffer(GlyphTable.forDocument(document));
+        this.fontMetricsCache = FontMetricsCache.forDocument(document);
+
+        this.rulingCollector = rulingCollector;
+        if (rulingCollector != null) {
+            rulingCollector.registerPathOperators(this);
+        }
     }
 
     public void process() throws IOException {
-        this.getText(this.document);
+        // getText(document) walks the page tree from the first page on every call and
+        // buffers a plain text rendering we never read, so process the page directly.
+        super.document = this.document;
+        this.output = DISCARDING_WRITER;
+        this.processPage(this.document.getPage(this.pageNumber - 1));
+        // the page keeps the buffer until its glyphs are read, without the growth slack
+        this.textBuffer.trimToSize();
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) throws IOException {
+        // the collector maps the rulings to the direction of the page's text
+        if (rulingCollector != null) {
+            rulingCollector.countGlyph(textRenderingMatrix);
+        }
+        super.showGlyph(textRenderingMatrix, font, code, displacement);
     }
 
     @Override
@@ -63,26 +103,27 @@ public class TextStripper extends PDFTextStripper {
 
             float wos = textPosition.getWidthOfSpace();
 
-            TextElement te = new TextElement(Utils.round(textPosition.getYDirAdj() - h, 2),
-                    Utils.round(textPosition.getXDirAdj(), 2), Utils.round(textPosition.getWidthDirAdj(), 2),
-                    Utils.round(textPosition.getHeightDir(), 2), textPosition.getFont(), textPosition.getFontSizeInPt(), c,
-                    // workaround a possible bug in PDFBox:
-                    // https://issues.apache.org/jira/browse/PDFBOX-1755
-                    wos, textPosition.getDir());
+            float top = Utils.round(textPosition.getYDirAdj() - h, 2);
+            float left = Utils.round(textPosition.getXDirAdj(), 2);
+            float width = Utils.round(textPosition.getWidthDirAdj(), 2);
+            float height = Utils.round(textPosition.getHeightDir(), 2);
+            // measured from the edges like TextElement.getWidth() and getHeight()
+            float elementWidth = (left + width) - left;
+            float elementHeight = (top + height) - top;
 
-            this.minCharWidth = (float) Math.min(this.minCharWidth, te.getWidth());
-            this.minCharHeight = (float) Math.min(this.minCharHeight, te.getHeight());
+            this.minCharWidth = (float) Math.min(this.minCharWidth, elementWidth);
+            this.minCharHeight = (float) Math.min(this.minCharHeight, elementHeight);
 
             countHeight++;
-            totalHeight += te.getHeight();
+            totalHeight += elementHeight;
             float avgHeight = totalHeight / countHeight;
             
             //We have an issue where tall blank cells throw off the row height calculation
             //Introspect a blank cell a bit here to see if it should be thrown away
-            if ((te.getText() == null || te.getText().trim().equals(""))) {
+            if (c.trim().equals("")) {
                 //if the cell height is more than AVG_HEIGHT_MULT_THRESHOLDxaverage, throw it away
                 if (avgHeight > 0
-                        && te.getHeight() >= (avgHeight * AVG_HEIGHT_MULT_THRESHOLD)) {
+                        && elementHeight >= (avgHeight * AVG_HEIGHT_MULT_THRESHOLD)) {
                     continue;
                 }
                 
@@ -91,14 +132,29 @@ public class TextStripper extends PDFTextStripper {
                     continue;
                 }
             }
-            
-            this.spatialIndex.add(te);
-            this.textElements.add(te);
+
+            this.textBuffer.add(top, left, width, height, textPosition.getFont(), textPosition.getFontSizeInPt(), c,
+                    // workaround a possible bug in PDFBox:
+                    // https://issues.apache.org/jira/browse/PDFBOX-1755
+                    wos, textPosition.getDir());
         }
     }
 
   @Override
   protected float computeFontHeight(PDFont font) throws IOException
+  {
+    // every page gets a fresh stripper, the document-wide cache spares recomputing
+    // the height of fonts shared by many pages
+    FontMetricsCache.FontMetrics metrics = fontMetricsCache.get(font.getCOSObject());
+    if (metrics == null)
+    {
+      metrics = new FontMetricsCache.FontMetrics(computeUncachedFontHeight(font));
+      fontMetricsCache.put(font.getCOSObject(), metrics);
+    }
+    return metrics.height;
+  }
+
+  private static float computeUncachedFontHeight(PDFont font) throws IOException
   {
     BoundingBox bbox = font.getBoundingBox();
     if (bbox.getLowerLeftY() < Short.MIN_VALUE)
@@ -145,6 +201,20 @@ public class TextStripper extends PDFTextStripper {
     return height;
   }
 
+    private static final Writer DISCARDING_WRITER = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
     private boolean isPrintable(String s) {
         Character c;
         Character.UnicodeBlock block;
@@ -157,11 +227,27 @@ public class TextStripper extends PDFTextStripper {
         return printable;
     }
 
+    public PageTextBuffer getTextBuffer() {
+        return textBuffer;
+    }
+
+    /**
+     * TextElement views of the extracted glyphs, in content stream order. Created on the
+     * first call; the glyphs themselves are kept in {@link #getTextBuffer()}.
+     */
     public List<TextElement> getTextElements() {
+        if (this.textElements == null) {
+            this.textElements = textBuffer.toTextElements();
+        }
         return this.textElements;
     }
 
     public RectangleSpatialIndex<TextElement> getSpatialIndex() {
+        if (spatialIndex == null) {
+            List<TextElement> inReadingOrder = new ArrayList<>(getTextElements());
+            ReadingOrder.sort(inReadingOrder);
+            spatialIndex = RectangleSpatialIndex.ofReadingOrder(inReadingOrder);
+        }
         return spatialIndex;
     }
 
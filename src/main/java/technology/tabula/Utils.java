@@ -21,12 +21,46 @@ public class Utils {
         return (Math.abs(f1 - f2) < EPSILON);
     }
 
+    // Largest magnitude for which a coordinate in hundredths converts back to float exactly
+    private final static float MAX_HUNDREDTHS_COORDINATE = (1 << 24) / 100f;
+
     public static float round(double d, int decimalPlace) {
+        if (decimalPlace == 2 && isHundredthsCoordinate(d)) {
+            return fromHundredths(toHundredths((float) d));
+        }
         BigDecimal bd = new BigDecimal(Double.toString(d));
         bd = bd.setScale(decimalPlace, BigDecimal.ROUND_HALF_UP);
         return bd.floatValue();
     }
 
+    /**
+     * Whether <code>d</code> is a float that {@link #toHundredths(float)} can represent, that is
+     * every page coordinate in practice.
+     */
+    public static boolean isHundredthsCoordinate(double d) {
+        return (float) d == d && Math.abs(d) < MAX_HUNDREDTHS_COORDINATE;
+    }
+
+    /**
+     * Fixed-point form of a coordinate in hundredths of a point, rounded half up like
+     * <code>round(f, 2)</code>: <code>fromHundredths(toHundredths(f)) == round(f, 2)</code>
+     * whenever {@link #isHundredthsCoordinate(double)} holds, and comparing the integers
+     * compares the rounded coordinates.
+     */
+    public static int toHundredths(float f) {
+        // f * 100 is exact in double (24 + 7 significant bits), and so is adding one half;
+        // a float never falls close enough to a half hundredth for its decimal string
+        // to round differently than its exact value
+        double scaled = Math.abs((double) f) * 100 + 0.5;
+        int hundredths = (int) Math.floor(scaled);
+        return f < 0 ? -hundredths : hundredths;
+    }
+
+    public static float fromHundredths(int hundredths) {
+        // both operands are exact floats, so the division is correctly rounded, like BigDecimal.floatValue
+        return (float) hundredths / 100f;
+    }
+
     public static List<Integer> range(final int begin, final int end) {
         return new AbstractList<Integer>() {
             @Override
@@ -49,66 +83,75 @@ public class Utils {
         Collections.sort(list, comparator);
     }
 
+    /**
+     * Key for sorting indexes by a float value with a primitive long sort: keys order like
+     * the values under {@link Float#compare}, then like the indexes. The index is
+     * <code>(int) key</code>.
+     */
+    public static long sortKey(float value, int index) {
+        int bits = Float.floatToIntBits(value);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (index & 0xffffffffL);
+    }
+
     /**
      * Przekształca punkty `start` i `end` dla każdego `Ruling`, aby wyrównać blisko położone linie
      */
     public static void snapRulings(List<Ruling> rulings, float xThreshold, float yThreshold) {
-        List<Point2D> points = new ArrayList<>();
-        Map<Ruling, Point2D[]> rulingToPoints = new HashMap<>();
-
-        // Pobranie wszystkich punktów startowych i końcowych
-        for (Ruling r : rulings) {
-            Point2D p1 = r.getStartPoint();
-            Point2D p2 = r.getEndPoint();
-            rulingToPoints.put(r, new Point2D[]{p1, p2});
-            points.add(p1);
-            points.add(p2);
+        if (rulings.isEmpty()) {
+            return;
+        }
+
+        // Punkty są przesuwane w miejscu, więc rulings widzą wyrównane współrzędne bez kopiowania
+        Point2D[] points = new Point2D[rulings.size() * 2];
+        for (int i = 0; i < rulings.size(); i++) {
+            points[2 * i] = rulings.get(i).getStartPoint();
+            points[2 * i + 1] = rulings.get(i).getEndPoint();
         }
 
-        // Grupowanie i wyrównywanie punktów w osi X
         snapPointsByAxis(points, xThreshold, true);
-        // Grupowanie i wyrównywanie punktów w osi Y
         snapPointsByAxis(points, yThreshold, false);
-
-        // Aktualizacja rulings po wyrównaniu punktów
-        for (Map.Entry<Ruling, Point2D[]> entry : rulingToPoints.entrySet()) {
-            Point2D[] updatedPoints = entry.getValue();
-            entry.getKey().setStartPoint(updatedPoints[0]);
-            entry.getKey().setEndPoint(updatedPoints[1]);
-        }
     }
 
     /**
-     * Grupowanie punktów w osi X lub Y i wyrównanie ich do średniej wartości
+     * Grupowanie punktów w osi X lub Y i wyrównanie ich do średniej wartości.
+     *
+     * Współrzędne są sortowane raz, jako klucze long, a grupy wyznacza jedno przejście:
+     * punkt należy do grupy, jeśli leży bliżej niż threshold od jej pierwszego punktu.
+     * Średnie są zapisywane z powrotem do punktów na końcu, bez list dla grup.
      */
-    private static void snapPointsByAxis(List<Point2D> points, float threshold, boolean isXAxis) {
-        points.sort(Comparator.comparingDouble(p -> isXAxis ? p.getX() : p.getY()));
-
-        List<List<Point2D>> groupedPoints = new ArrayList<>();
-        groupedPoints.add(new ArrayList<>(Collections.singletonList(points.get(0))));
-
-        for (Point2D p : points.subList(1, points.size())) {
-            List<Point2D> lastGroup = groupedPoints.get(groupedPoints.size() - 1);
-            if (Math.abs((isXAxis ? p.getX() : p.getY()) - (isXAxis ? lastGroup.get(0).getX() : lastGroup.get(0).getY())) < threshold) {
-                lastGroup.add(p);
-            } else {
-                groupedPoints.add(new ArrayList<>(Collections.singletonList(p)));
-            }
+    private static void snapPointsByAxis(Point2D[] points, float threshold, boolean isXAxis) {
+        int count = points.length;
+        float[] coordinates = new float[count];
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            coordinates[i] = isXAxis ? points[i].getX() : points[i].getY();
+            order[i] = sortKey(coordinates[i], i);
         }
+        Arrays.sort(order);
+
+        float[] snapped = new float[count];
+        for (int groupStart = 0; groupStart < count; ) {
+            float first = coordinates[(int) order[groupStart]];
+            double sum = first;
+            int groupEnd = groupStart + 1;
+            while (groupEnd < count && Math.abs(coordinates[(int) order[groupEnd]] - first) < threshold) {
+                sum += coordinates[(int) order[groupEnd]];
+                groupEnd++;
+            }
 
-        for (List<Point2D> group : groupedPoints) {
-            float avgLoc = 0;
-            for (Point2D p : group) {
-                avgLoc += isXAxis ? p.getX() : p.getY();
+            float avgLoc = (float) (sum / (groupEnd - groupStart));
+            for (int j = groupStart; j < groupEnd; j++) {
+                snapped[(int) order[j]] = avgLoc;
             }
-            avgLoc /= group.size();
+            groupStart = groupEnd;
+        }
 
-            for (Point2D p : group) {
-                if (isXAxis) {
-                    p.setX(avgLoc);
-                } else {
-                    p.setY(avgLoc);
-                }
+        for (int i = 0; i < count; i++) {
+            if (isXAxis) {
+                points[i].setX(snapped[i]);
+            } else {
+                points[i].setY(snapped[i]);
             }
         }
     }
@@ -198,47 +241,10 @@ public class Utils {
             return;
         }
 
-        // Sortowanie według X
-        points.sort(Comparator.comparingDouble(Point2D::getX));
-
-        // Grupowanie i "przyciąganie" punktów X
-        List<List<Point2D>> groupedX = new ArrayList<>();
-        for (Point2D p : points) {
-            if (!groupedX.isEmpty() && Math.abs(p.getX() - groupedX.get(groupedX.size() - 1).get(0).getX()) < xThreshold) {
-                groupedX.get(groupedX.size() - 1).add(p);
-            } else {
-                groupedX.add(new ArrayList<>(Collections.singletonList(p)));
-            }
-        }
-
-        // Uśrednienie i aktualizacja wartości X
-        for (List<Point2D> group : groupedX) {
-            float avgX = (float) group.stream().mapToDouble(Point2D::getX).average().orElse(0);
-            for (Point2D p : group) {
-                p.setX(avgX);
-            }
-        }
-
-        // Sortowanie według Y
-        points.sort(Comparator.comparingDouble(Point2D::getY));
-
-        // Grupowanie i "przyciąganie" punktów Y
-        List<List<Point2D>> groupedY = new ArrayList<>();
-        for (Point2D p : points) {
-            if (!groupedY.isEmpty() && Math.abs(p.getY() - groupedY.get(groupedY.size() - 1).get(0).getY()) < yThreshold) {
-                groupedY.get(groupedY.size() - 1).add(p);
-            } else {
-                groupedY.add(new ArrayList<>(Collections.singletonList(p)));
-            }
-        }
-
-        // Uśrednienie i aktualizacja wartości Y
-        for (List<Point2D> group : groupedY) {
-            float avgY = (float) group.stream().mapToDouble(Point2D::getY).average().orElse(0);
-            for (Point2D p : group) {
-                p.setY(avgY);
-            }
-        }
+        // "Przyciąganie" punktów najpierw w osi X, potem w osi Y
+        Point2D[] pointArray = points.toArray(new Point2D[0]);
+        snapPointsByAxis(pointArray, xThreshold, true);
+        snapPointsByAxis(pointArray, yThreshold, false);
     }
 
     public static void snapPointPairs(List<Point2D[]> pointPairs, float xThreshold, float yThreshold) {
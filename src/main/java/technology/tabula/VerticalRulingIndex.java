@@ -0,0 +1,87 @@
+package technology.tabula;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vertical rulings by position, for finding whether one separates two glyphs. The rulings
+ * are kept in primitive arrays sorted by {@link Ruling#getPosition()}, so a query only
+ * visits the rulings lying between the two glyphs.
+ */
+public class VerticalRulingIndex {
+
+    public static final VerticalRulingIndex EMPTY = new VerticalRulingIndex(null);
+
+    // ruling i lies at positions[i] and spans starts[i] (start point y) to ends[i] (end point y)
+    private final float[] positions;
+    private final float[] starts;
+    private final float[] ends;
+
+    public VerticalRulingIndex(List<Ruling> verticalRulings) {
+        int count = verticalRulings == null ? 0 : verticalRulings.size();
+        long[] keys = new long[count];
+        float[] position = new float[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            Ruling r = verticalRulings.get(i);
+            // a ruling whose start point lies below its end point overlaps no glyph
+            if (r.getStart().getY() >= r.getEnd().getY()) {
+                continue;
+            }
+            position[i] = r.getPosition();
+            keys[kept++] = Utils.sortKey(position[i], i);
+        }
+        Arrays.sort(keys, 0, kept);
+
+        positions = new float[kept];
+        starts = new float[kept];
+        ends = new float[kept];
+        for (int k = 0; k < kept; k++) {
+            int i = (int) keys[k];
+            Ruling r = verticalRulings.get(i);
+            positions[k] = position[i];
+            starts[k] = r.getStart().getY();
+            ends[k] = r.getEnd().getY();
+        }
+    }
+
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * Whether a ruling lies strictly between the lefts of the two glyphs and vertically
+     * overlaps both of them.
+     */
+    public boolean separates(TextElement a, TextElement b) {
+        float from = Math.min(a.getLeft(), b.getLeft());
+        float to = Math.max(a.getLeft(), b.getLeft());
+        if (positions.length == 0 || !(from < to)) {
+            return false;
+        }
+        for (int i = upperBound(from); i < positions.length && positions[i] < to; i++) {
+            if (overlaps(a, i) && overlaps(b, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean overlaps(TextElement te, int i) {
+        return Math.min(te.getBottom(), ends[i]) - Math.max(te.getTop(), starts[i]) > 0;
+    }
+
+    // first index with positions[i] > value
+    private int upperBound(float value) {
+        int lo = 0, hi = positions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (positions[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
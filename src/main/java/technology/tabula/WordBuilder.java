@@ -0,0 +1,193 @@
+package technology.tabula;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Merges glyphs into words as they come, keeping only the state of the current line and
+ * word. A word is complete once a glyph starts the next one, or on {@link #finish()}; it
+ * is then split by directionality (see {@link TextChunk#groupByDirectionality(Boolean)})
+ * and passed downstream, unless the builder was told that all the text is LTR or neutral
+ * (see {@link TextChunk#isLeftToRight(String)}), in which case the split would return the
+ * word unchanged and is skipped. Feeding the glyphs of a list in order yields the chunks of
+ * {@link TextElement#mergeWords(java.util.List, VerticalRulingIndex)}.
+ */
+public class WordBuilder {
+
+    private static final float AVERAGE_CHAR_TOLERANCE = 0.3f;
+
+    private final VerticalRulingIndex verticalRulings;
+    private final Consumer<TextChunk> downstream;
+    private final boolean leftToRight;
+
+    private TextChunk currentChunk;
+    private float previousAveCharWidth;
+    private float endOfLastTextX;
+    private float maxYForLine;
+    private float maxHeightForLine;
+    private float minYTopForLine;
+    private float lastWordSpacing;
+
+    public WordBuilder(VerticalRulingIndex verticalRulings, Consumer<TextChunk> downstream) {
+        this(verticalRulings, downstream, false);
+    }
+
+    /**
+     * @param leftToRight whether the text of every glyph fed is LTR or neutral
+     */
+    public WordBuilder(VerticalRulingIndex verticalRulings, Consumer<TextChunk> downstream, boolean leftToRight) {
+        this.verticalRulings = verticalRulings;
+        this.downstream = downstream;
+        this.leftToRight = leftToRight;
+    }
+
+    public void addAll(Iterator<? extends TextElement> glyphs) {
+        while (glyphs.hasNext()) {
+            add(glyphs.next());
+        }
+    }
+
+    /**
+     * Emits the word being built, if any. The builder can be fed again afterwards, as if
+     * it were new.
+     */
+    public void finish() {
+        if (currentChunk != null) {
+            emit(currentChunk);
+            currentChunk = null;
+        }
+    }
+
+    private void emit(TextChunk chunk) {
+        if (leftToRight) {
+            downstream.accept(chunk);
+            return;
+        }
+        // choose the dominant direction
+        boolean isLtrDominant = chunk.isLtrDominant() != -1; // treat neutral as LTR
+        downstream.accept(chunk.groupByDirectionality(isLtrDominant));
+    }
+
+    /**
+     * Adds the next glyph to the current word, or starts a new word with it. Ported from
+     * PDFBox's PDFTextStripper.writePage, with modifications. Here be dragons
+     */
+    public void add(TextElement chr) {
+        if (currentChunk == null) {
+            currentChunk = new TextChunk(chr);
+            previousAveCharWidth = (float) currentChunk.getWidth();
+            endOfLastTextX = currentChunk.getRight();
+            maxYForLine = currentChunk.getBottom();
+            maxHeightForLine = (float) currentChunk.getHeight();
+            minYTopForLine = currentChunk.getTop();
+            lastWordSpacing = -1;
+            return;
+        }
+
+        TextElement prevChar = currentChunk.textElements.get(currentChunk.textElements.size() - 1);
+
+        // if same char AND overlapped, skip
+        if ((chr.getText().equals(prevChar.getText())) && (prevChar.overlapRatio(chr) > 0.5)) {
+            return;
+        }
+
+        // if chr is a space that overlaps with prevChar, skip
+        if (chr.getText().equals(" ") && Utils.feq(prevChar.getLeft(), chr.getLeft()) && Utils.feq(prevChar.getTop(), chr.getTop())) {
+            return;
+        }
+
+        // Resets the average character width when we see a change in font
+        // or a change in the font size
+        if ((chr.getFont() != prevChar.getFont()) || !Utils.feq(chr.getFontSize(), prevChar.getFontSize())) {
+            previousAveCharWidth = -1;
+        }
+
+        // is there any vertical ruling that goes across chr and prevChar?
+        boolean acrossVerticalRuling = verticalRulings.separates(prevChar, chr);
+
+        // Estimate the expected width of the space based on the
+        // space character with some margin.
+        float wordSpacing = chr.getWidthOfSpace();
+        float deltaSpace = 0;
+        if (java.lang.Float.isNaN(wordSpacing) || wordSpacing == 0) {
+            deltaSpace = java.lang.Float.MAX_VALUE;
+        } else if (lastWordSpacing < 0) {
+            deltaSpace = wordSpacing * 0.5f; // 0.5 == spacing tolerance
+        } else {
+            deltaSpace = ((wordSpacing + lastWordSpacing) / 2.0f) * 0.5f;
+        }
+
+        // Estimate the expected width of the space based on the
+        // average character width with some margin. This calculation does not
+        // make a true average (average of averages) but we found that it gave the
+        // best results after numerous experiments. Based on experiments we also found that
+        // .3 worked well.
+        float averageCharWidth;
+        if (previousAveCharWidth < 0) {
+            averageCharWidth = (float) (chr.getWidth() / chr.getText().length());
+        } else {
+            averageCharWidth = (float) ((previousAveCharWidth + (chr.getWidth() / chr.getText().length())) / 2.0f);
+        }
+        float deltaCharWidth = averageCharWidth * AVERAGE_CHAR_TOLERANCE;
+
+        // Compares the values obtained by the average method and the wordSpacing method and picks
+        // the smaller number.
+        float expectedStartOfNextWordX = -java.lang.Float.MAX_VALUE;
+
+        if (endOfLastTextX != -1) {
+            expectedStartOfNextWordX = endOfLastTextX + Math.min(deltaCharWidth, deltaSpace);
+        }
+
+        // new line?
+        boolean sameLine = true;
+        if (!Utils.overlap(chr.getBottom(), chr.height, maxYForLine, maxHeightForLine)) {
+            endOfLastTextX = -1;
+            expectedStartOfNextWordX = -java.lang.Float.MAX_VALUE;
+            maxYForLine = -java.lang.Float.MAX_VALUE;
+            maxHeightForLine = -1;
+            minYTopForLine = java.lang.Float.MAX_VALUE;
+            sameLine = false;
+        }
+
+        endOfLastTextX = chr.getRight();
+
+        // should we add a space?
+        TextElement sp;
+        if (!acrossVerticalRuling &&
+                sameLine &&
+                expectedStartOfNextWordX < chr.getLeft() &&
+                !prevChar.getText().endsWith(" ")) {
+
+            sp = new TextElement(prevChar.getTop(),
+                    prevChar.getLeft(),
+                    expectedStartOfNextWordX - prevChar.getLeft(),
+                    (float) prevChar.getHeight(),
+                    prevChar.getFont(),
+                    prevChar.getFontSize(),
+                    " ",
+                    prevChar.getWidthOfSpace());
+
+            currentChunk.add(sp);
+        } else {
+            sp = null;
+        }
+
+        maxYForLine = Math.max(chr.getBottom(), maxYForLine);
+        maxHeightForLine = (float) Math.max(maxHeightForLine, chr.getHeight());
+        minYTopForLine = Math.min(minYTopForLine, chr.getTop());
+
+        float dist = chr.getLeft() - (sp != null ? sp.getRight() : prevChar.getRight());
+
+        if (!acrossVerticalRuling &&
+                sameLine &&
+                (dist < 0 ? currentChunk.verticallyOverlaps(chr) : dist < wordSpacing)) {
+            currentChunk.add(chr);
+        } else { // create a new chunk
+            emit(currentChunk);
+            currentChunk = new TextChunk(chr);
+        }
+
+        lastWordSpacing = wordSpacing;
+        previousAveCharWidth = (float) (sp != null ? (averageCharWidth + sp.getWidth()) / 2.0f : averageCharWidth);
+    }
+}
@@ -10,7 +10,6 @@ import technology.tabula.*;
 import technology.tabula.detectors.NurminenDetectionAlgorithm;
 import technology.tabula.extractors.BasicExtractionAlgorithm;
 import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
-import com.tom_roush.pdfbox.pdmodel.PDDocument;
 
 
 public class Debug {
@@ -53,8 +52,7 @@ public class Debug {
     public static void renderPage(String pdfPath, String outPath, int pageNumber, Rectangle area,
                                   boolean drawTextChunks, boolean drawSpreadsheets, boolean drawRulings, boolean drawIntersections,
                                   boolean drawColumns, boolean drawDetectedTables) throws IOException {
-        PDDocument document = PDDocument.load(new File(pdfPath));
-        ObjectExtractor oe = new ObjectExtractor(document);
+        ObjectExtractor oe = ObjectExtractor.open(new File(pdfPath), null);
         Page page = oe.extract(pageNumber + 1);
 
         if (area != null) {
@@ -92,7 +90,7 @@ public class Debug {
             }
         }
 
-        document.close();
+        oe.close();
     }
 
     public static void main(String[] args) throws IOException {
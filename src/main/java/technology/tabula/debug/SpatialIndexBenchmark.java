@@ -0,0 +1,226 @@
+package technology.tabula.debug;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.*;
+import technology.tabula.*;
+
+/**
+ * Compares the {@link RectangleSpatialIndex} backends on the glyphs of real pages: the time
+ * to build an index per page, the latency of the queries tabula issues and the heap held
+ * by the indexes.
+ *
+ * Two query shapes are measured: the cells of a 40x30 grid over the text of the page, as
+ * issued by the lattice extractor for each cell, and the neighbourhood of every glyph.
+ */
+public class SpatialIndexBenchmark {
+
+    private static final int GRID_COLUMNS = 40;
+    private static final int GRID_ROWS = 30;
+    private static final String JTS_STRTREE_CLASS = "org.locationtech.jts.index.strtree.STRtree";
+
+    private static final class Workload {
+        final List<List<TextElement>> pages = new ArrayList<>();
+        final List<List<Rectangle>> cellQueries = new ArrayList<>();
+        final List<List<Rectangle>> glyphQueries = new ArrayList<>();
+    }
+
+    private static final class Result {
+        long buildNanos;
+        long cellQueryNanos;
+        long glyphQueryNanos;
+        long heapBytes;
+        long checksum;
+    }
+
+    private static Workload loadWorkload(File pdfFile, List<Integer> pages) throws IOException {
+        Workload workload = new Workload();
+        try (ObjectExtractor oe = ObjectExtractor.open(pdfFile, null)) {
+            PageIterator it = pages == null ? oe.extract() : oe.extract(pages);
+            while (it.hasNext()) {
+                Page page = it.next();
+                List<TextElement> text = new ArrayList<>(page.getText());
+                if (text.isEmpty()) {
+                    continue;
+                }
+                workload.pages.add(text);
+                workload.cellQueries.add(cellQueries(page.getTextBounds()));
+                workload.glyphQueries.add(glyphQueries(text));
+            }
+        }
+        return workload;
+    }
+
+    private static List<Rectangle> cellQueries(Rectangle bounds) {
+        List<Rectangle> queries = new ArrayList<>(GRID_COLUMNS * GRID_ROWS);
+        float width = bounds.getWidth() / GRID_COLUMNS;
+        float height = bounds.getHeight() / GRID_ROWS;
+        for (int row = 0; row < GRID_ROWS; row++) {
+            for (int column = 0; column < GRID_COLUMNS; column++) {
+                queries.add(new Rectangle(bounds.getTop() + row * height, bounds.getLeft() + column * width, width, height));
+            }
+        }
+        return queries;
+    }
+
+    private static List<Rectangle> glyphQueries(List<TextElement> text) {
+        List<Rectangle> queries = new ArrayList<>(text.size());
+        for (TextElement te : text) {
+            float margin = te.getHeight();
+            queries.add(new Rectangle(te.getTop() - margin, te.getLeft() - margin,
+                    te.getWidth() + 2 * margin, te.getHeight() + 2 * margin));
+        }
+        return queries;
+    }
+
+    private static Result run(RectangleSpatialIndex.Backend backend, Workload workload) {
+        Result result = new Result();
+        Rectangle nowhere = new Rectangle();
+        List<RectangleSpatialIndex<TextElement>> indexes = new ArrayList<>(workload.pages.size());
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (List<TextElement> text : workload.pages) {
+            RectangleSpatialIndex<TextElement> index = RectangleSpatialIndex.ofReadingOrder(text, backend);
+            // backends may build their structure on the first query
+            index.intersects(nowhere);
+            indexes.add(index);
+        }
+        result.buildNanos = System.nanoTime() - start;
+        result.heapBytes = usedHeap() - heapBefore;
+
+        start = System.nanoTime();
+        for (int i = 0; i < indexes.size(); i++) {
+            for (Rectangle query : workload.cellQueries.get(i)) {
+                result.checksum += checksum(indexes.get(i).contains(query));
+            }
+        }
+        result.cellQueryNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < indexes.size(); i++) {
+            for (Rectangle query : workload.glyphQueries.get(i)) {
+                result.checksum += checksum(indexes.get(i).contains(query));
+            }
+        }
+        result.glyphQueryNanos = System.nanoTime() - start;
+
+        return result;
+    }
+
+    // depends on the order of the results too, so backends can be checked against each other
+    private static long checksum(List<TextElement> found) {
+        long checksum = found.size();
+        for (TextElement te : found) {
+            checksum = checksum * 31 + System.identityHashCode(te);
+        }
+        return checksum;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws IOException {
+        CommandLineParser parser = new DefaultParser();
+        try {
+            CommandLine line = parser.parse(buildOptions(), args);
+            if (line.hasOption('h')) {
+                printHelp();
+                System.exit(0);
+            }
+
+            if (line.getArgs().length != 1) {
+                throw new ParseException("Need one filename\nTry --help for help");
+            }
+
+            File pdfFile = new File(line.getArgs()[0]);
+            if (!pdfFile.exists()) {
+                throw new ParseException("File does not exist");
+            }
+
+            List<Integer> pages = line.hasOption('p') ? Utils.parsePagesOption(line.getOptionValue('p')) : null;
+            int rounds = line.hasOption('n') ? Integer.parseInt(line.getOptionValue('n')) : 5;
+
+            Workload workload = loadWorkload(pdfFile, pages);
+            int glyphs = 0, cellQueries = 0, glyphQueries = 0;
+            for (int i = 0; i < workload.pages.size(); i++) {
+                glyphs += workload.pages.get(i).size();
+                cellQueries += workload.cellQueries.get(i).size();
+                glyphQueries += workload.glyphQueries.get(i).size();
+            }
+            System.out.printf("%d pages, %d glyphs, %d rounds%n", workload.pages.size(), glyphs, rounds);
+            System.out.printf("%-14s %14s %14s %14s %12s %s%n",
+                    "backend", "build us/page", "cell ns/query", "glyph ns/query", "heap KB", "checksum");
+
+            for (RectangleSpatialIndex.Backend backend : RectangleSpatialIndex.Backend.values()) {
+                if (!isAvailable(backend)) {
+                    System.out.printf("%-14s skipped, %s is not on the classpath%n", backend, JTS_STRTREE_CLASS);
+                    continue;
+                }
+                // the first round warms up the JIT
+                run(backend, workload);
+                Result total = new Result();
+                for (int round = 0; round < rounds; round++) {
+                    Result result = run(backend, workload);
+                    total.buildNanos += result.buildNanos;
+                    total.cellQueryNanos += result.cellQueryNanos;
+                    total.glyphQueryNanos += result.glyphQueryNanos;
+                    total.heapBytes += result.heapBytes;
+                    total.checksum = result.checksum;
+                }
+                System.out.printf("%-14s %14.1f %14.1f %14.1f %12d %x%n", backend,
+                        total.buildNanos / 1e3 / rounds / Math.max(1, workload.pages.size()),
+                        (double) total.cellQueryNanos / rounds / Math.max(1, cellQueries),
+                        (double) total.glyphQueryNanos / rounds / Math.max(1, glyphQueries),
+                        total.heapBytes / rounds / 1024, total.checksum);
+            }
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // jts-core is an optional dependency, absent on Android
+    private static boolean isAvailable(RectangleSpatialIndex.Backend backend) {
+        if (backend != RectangleSpatialIndex.Backend.JTS_STRTREE) {
+            return true;
+        }
+        try {
+            Class.forName(JTS_STRTREE_CLASS, false, SpatialIndexBenchmark.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static void printHelp() {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("tabula-index-benchmark", "Compare the spatial index backends", buildOptions(), "", true);
+    }
+
+    private static Options buildOptions() {
+        Options o = new Options();
+        o.addOption("h", "help", false, "Print this help text.");
+        o.addOption(Option.builder("p")
+                .longOpt("pages")
+                .desc("Comma separated list of ranges, or all. Examples: --pages 1-3,5-7, --pages 3 or --pages all. Default is --pages all")
+                .hasArg()
+                .argName("PAGES")
+                .build());
+        o.addOption(Option.builder("n")
+                .longOpt("rounds")
+                .desc("Number of measured rounds per backend. Default is 5")
+                .hasArg()
+                .argName("ROUNDS")
+                .build());
+        return o;
+    }
+}
@@ -27,8 +27,11 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
 
     @Override
     public List<Rectangle> detect(Page page) {
-        List<Ruling> horizontalRulings = page.getHorizontalRulings();
-        List<Ruling> verticalRulings = page.getVerticalRulings();
+        // snapping moves the end points of the rulings, so it works on copies: the rulings of
+        // the page stay where its RulingStore indexed them
+        RulingStore store = page.getRulingStore();
+        List<Ruling> horizontalRulings = copyOf(store.getHorizontals());
+        List<Ruling> verticalRulings = copyOf(store.getVerticals());
 
         List<Ruling> allEdges = new ArrayList<>(horizontalRulings);
         allEdges.addAll(verticalRulings);
@@ -92,6 +95,14 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         return new ArrayList<>(tableSet);
     }
 
+    private static List<Ruling> copyOf(List<Ruling> rulings) {
+        List<Ruling> copies = new ArrayList<>(rulings.size());
+        for (Ruling r : rulings) {
+            copies.add(new Ruling(r.getStartPoint(), r.getEndPoint()));
+        }
+        return copies;
+    }
+
     private List<Rectangle> getTableAreasFromCells(List<? extends Rectangle> cells) {
         List<List<Rectangle>> cellGroups = new ArrayList<>();
         for (Rectangle cell : cells) {
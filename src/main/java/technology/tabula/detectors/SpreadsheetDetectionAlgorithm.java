@@ -3,6 +3,7 @@ package technology.tabula.detectors;
 import technology.tabula.Cell;
 import technology.tabula.Page;
 import technology.tabula.Rectangle;
+import technology.tabula.RulingStore;
 import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
 
 import java.util.Collections;
@@ -18,7 +19,8 @@ import java.util.List;
 public class SpreadsheetDetectionAlgorithm implements DetectionAlgorithm {
     @Override
     public List<Rectangle> detect(Page page) {
-        List<Cell> cells = SpreadsheetExtractionAlgorithm.findCells(page.getHorizontalRulings(), page.getVerticalRulings());
+        RulingStore store = page.getRulingStore();
+        List<Cell> cells = SpreadsheetExtractionAlgorithm.findCells(store.getHorizontals(), store.getVerticals());
 
         List<Rectangle> tables = SpreadsheetExtractionAlgorithm.findSpreadsheetsFromCells(cells);
 
@@ -13,6 +13,7 @@ import technology.tabula.Ruling;
 import technology.tabula.Table;
 import technology.tabula.TextChunk;
 import technology.tabula.TextElement;
+import technology.tabula.VerticalRulingIndex;
 
 public class BasicExtractionAlgorithm implements ExtractionAlgorithm {
     
@@ -43,7 +44,8 @@ public class BasicExtractionAlgorithm implements ExtractionAlgorithm {
             return Arrays.asList(new Table[] { Table.empty() });
         }
         
-        List<TextChunk> textChunks = this.verticalRulings == null ? TextElement.mergeWords(page.getText()) : TextElement.mergeWords(page.getText(), this.verticalRulings);
+        VerticalRulingIndex rulingIndex = this.verticalRulings == null ? VerticalRulingIndex.EMPTY : new VerticalRulingIndex(this.verticalRulings);
+        List<TextChunk> textChunks = TextElement.mergeWords(page.getText(), rulingIndex, page.isLeftToRight());
         List<Line> lines = TextChunk.groupByLines(textChunks);
         List<Float> columns = null;
         
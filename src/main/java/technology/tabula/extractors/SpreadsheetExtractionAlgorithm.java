@@ -7,74 +7,40 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
 
     private static final float MAGIC_HEURISTIC_NUMBER = 0.65f;
 
-    private static final Comparator<Point2D> Y_FIRST_POINT_COMPARATOR = (point1, point2) -> {
-        int compareY = compareRounded(point1.getY(), point2.getY());
-        if (compareY == 0) {
-            return compareRounded(point1.getX(), point2.getX());
-        }
-        return compareY;
-    };
-
-    private static final Comparator<Point2D> X_FIRST_POINT_COMPARATOR = (point1, point2) -> {
-        int compareX = compareRounded(point1.getX(), point2.getX());
-        if (compareX == 0) {
-            return compareRounded(point1.getY(), point2.getY());
-        }
-        return compareX;
-    };
-
-    private static int compareRounded(double d1, double d2) {
-        float d1Rounded = Utils.round(d1, 2);
-        float d2Rounded = Utils.round(d2, 2);
-
-        return Float.compare(d1Rounded, d2Rounded);
-    }
-
     @Override
     public List<Table> extract(Page page) {
-        return extract(page, page.getRulings());
+        RulingStore store = page.getRulingStore();
+        return extract(page, store.getHorizontals(), store.getVerticals());
     }
 
     public List<Table> extract(Page page, List<Ruling> rulings) {
-        List<Ruling> horizontalR = new ArrayList<>();
-        List<Ruling> verticalR = new ArrayList<>();
+        RulingStore store = new RulingStore(rulings);
+        return extract(page, store.getHorizontals(), store.getVerticals());
+    }
 
-        for (Ruling r: rulings) {
-            if (r.horizontal()) {
-                horizontalR.add(r);
-            }
-            else if (r.vertical()) {
-                verticalR.add(r);
-            }
-        }
-        horizontalR = Ruling.collapseOrientedRulings(horizontalR);
-        verticalR = Ruling.collapseOrientedRulings(verticalR);
+    private List<Table> extract(Page page, List<Ruling> horizontals, List<Ruling> verticals) {
+        List<Ruling> horizontalR = Ruling.collapseOrientedRulings(horizontals);
+        List<Ruling> verticalR = Ruling.collapseOrientedRulings(verticals);
 
         List<Cell> cells = findCells(horizontalR, verticalR);
         List<Rectangle> spreadsheetAreas = findSpreadsheetsFromCells(cells);
 
+        // the rulings each area intersects are found by range queries, in list order
+        RulingStore horizontalStore = new RulingStore(horizontalR);
+        RulingStore verticalStore = new RulingStore(verticalR);
+
         List<Table> spreadsheets = new ArrayList<>();
         for (Rectangle area: spreadsheetAreas) {
             List<Cell> overlappingCells = new ArrayList<>();
             for (Cell c: cells) {
                 if (c.intersects(area)) {
-                    c.setTextElements(TextElement.mergeWords(page.getText(c)));
+                    c.setTextElements(TextElement.mergeWords(page.getText(c), VerticalRulingIndex.EMPTY, page.isLeftToRight()));
                     overlappingCells.add(c);
                 }
             }
 
-            List<Ruling> horizontalOverlappingRulings = new ArrayList<>();
-            for (Ruling hr: horizontalR) {
-                if (area.intersects(hr)) {
-                    horizontalOverlappingRulings.add(hr);
-                }
-            }
-            List<Ruling> verticalOverlappingRulings = new ArrayList<>();
-            for (Ruling vr: verticalR) {
-                if (area.intersects(vr)) {
-                    verticalOverlappingRulings.add(vr);
-                }
-            }
+            List<Ruling> horizontalOverlappingRulings = horizontalStore.getRulingsNear(area);
+            List<Ruling> verticalOverlappingRulings = verticalStore.getRulingsNear(area);
 
             TableWithRulingLines t = new TableWithRulingLines(area, overlappingCells, horizontalOverlappingRulings, verticalOverlappingRulings, this, page.getPageNumber());
             spreadsheets.add(t);
@@ -83,41 +49,72 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
         return spreadsheets;
     }
 
+    /**
+     * Finds the cells delimited by the crossings of the rulings. Each crossing, taken as a
+     * top left corner, yields the cell closed by the nearest crossing below it on the same
+     * vertical ruling, the nearest crossing right of it on the same horizontal ruling, and
+     * the crossing of their rulings at the bottom right.
+     *
+     * Crossings are compared rounded to hundredths. They are indexed by row (same y) and
+     * by column (same x), so the neighbours of a corner are found by walking its row and
+     * column, and the bottom right corner is looked up by point.
+     */
     public static List<Cell> findCells(List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines) {
+        RulingIntersections crossings = RulingIntersections.find(horizontalRulingLines, verticalRulingLines);
+        int count = crossings.size();
         List<Cell> cellsFound = new ArrayList<>();
-        Map<Point2D, Ruling[]> intersectionPoints = Ruling.findIntersections(horizontalRulingLines, verticalRulingLines);
-        List<Point2D> intersectionPointsList = new ArrayList<>(intersectionPoints.keySet());
-        intersectionPointsList.sort(Y_FIRST_POINT_COMPARATOR);
+        if (count == 0) {
+            return cellsFound;
+        }
 
-        for (int i = 0; i < intersectionPointsList.size(); i++) {
-            Point2D topLeft = intersectionPointsList.get(i);
-            Ruling[] hv = intersectionPoints.get(topLeft);
+        // rulings equal to an earlier one of their list get that one's index
+        int[] hIds = canonicalIds(horizontalRulingLines);
+        int[] vIds = canonicalIds(verticalRulingLines);
 
-            List<Point2D> xPoints = new ArrayList<>();
-            List<Point2D> yPoints = new ArrayList<>();
+        // crossings come sorted by y then x, in reading order: rows are runs of equal y
+        int[] rowEnd = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            boolean sameRow = i + 1 < count
+                    && Utils.toHundredths(crossings.getY(i)) == Utils.toHundredths(crossings.getY(i + 1));
+            rowEnd[i] = sameRow ? rowEnd[i + 1] : i + 1;
+        }
+
+        // columns: crossings sorted by x then y; crossing i sits at columnPosition[i]
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) Utils.toHundredths(crossings.getX(i)) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] columns = new int[count];
+        int[] columnPosition = new int[count];
+        int[] columnEnd = new int[count];
+        for (int p = count - 1; p >= 0; p--) {
+            columns[p] = (int) keys[p];
+            columnPosition[columns[p]] = p;
+            boolean sameColumn = p + 1 < count && (keys[p] >>> 32) == (keys[p + 1] >>> 32);
+            columnEnd[p] = sameColumn ? columnEnd[p + 1] : p + 1;
+        }
+
+        for (int topLeft = 0; topLeft < count; topLeft++) {
+            int h = hIds[crossings.getHorizontal(topLeft)];
+            int v = vIds[crossings.getVertical(topLeft)];
 
-            for (Point2D p: intersectionPointsList.subList(i, intersectionPointsList.size())) {
-                if (p.getX() == topLeft.getX() && p.getY() > topLeft.getY()) {
-                    xPoints.add(p);
-                }
-                if (p.getY() == topLeft.getY() && p.getX() > topLeft.getX()) {
-                    yPoints.add(p);
-                }
-            }
             outer:
-            for (Point2D xPoint: xPoints) {
-                if (!hv[1].equals(intersectionPoints.get(xPoint)[1])) {
+            for (int p = columnPosition[topLeft] + 1; p < columnEnd[columnPosition[topLeft]]; p++) {
+                int bottomLeft = columns[p];
+                if (vIds[crossings.getVertical(bottomLeft)] != v) {
                     continue;
                 }
-                for (Point2D yPoint: yPoints) {
-                    if (!hv[0].equals(intersectionPoints.get(yPoint)[0])) {
+                int bottomH = hIds[crossings.getHorizontal(bottomLeft)];
+                for (int topRight = topLeft + 1; topRight < rowEnd[topLeft]; topRight++) {
+                    if (hIds[crossings.getHorizontal(topRight)] != h) {
                         continue;
                     }
-                    Point2D btmRight = new Point2D(yPoint.getX(), xPoint.getY());
-                    if (intersectionPoints.containsKey(btmRight)
-                            && intersectionPoints.get(btmRight)[0].equals(intersectionPoints.get(xPoint)[0])
-                            && intersectionPoints.get(btmRight)[1].equals(intersectionPoints.get(yPoint)[1])) {
-                        cellsFound.add(new Cell(topLeft, btmRight));
+                    int bottomRight = crossings.indexOf(crossings.getX(topRight), crossings.getY(bottomLeft));
+                    if (bottomRight >= 0
+                            && hIds[crossings.getHorizontal(bottomRight)] == bottomH
+                            && vIds[crossings.getVertical(bottomRight)] == vIds[crossings.getVertical(topRight)]) {
+                        cellsFound.add(new Cell(crossings.getPoint(topLeft), crossings.getPoint(bottomRight)));
                         break outer;
                     }
                 }
@@ -126,35 +123,82 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
         return cellsFound;
     }
 
+    private static int[] canonicalIds(List<Ruling> rulings) {
+        Map<Ruling, Integer> first = new HashMap<>();
+        int[] ids = new int[rulings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Integer id = first.putIfAbsent(rulings.get(i), i);
+            ids[i] = id == null ? i : id;
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the areas covered by groups of adjacent cells: the bounding boxes of the outlines
+     * of the union of the cells.
+     *
+     * Corners are compared rounded to hundredths, as {@link PackedPointMap} keys. A corner
+     * shared by an even number of cells lies inside the union, one shared by an odd number is
+     * a vertex of an outline. Along each row of vertices (same y), sorted by x, consecutive
+     * vertices are joined by horizontal edges, and likewise along each column by vertical
+     * edges; each outline is then traced by alternating horizontal and vertical edges.
+     */
     public static List<Rectangle> findSpreadsheetsFromCells(List<? extends Rectangle> cells) {
         List<Rectangle> rectangles = new ArrayList<>();
-        Set<Point2D> pointSet = new HashSet<>();
-        Map<Point2D, Point2D> edgesH = new HashMap<>();
-        Map<Point2D, Point2D> edgesV = new HashMap<>();
-        int i = 0;
 
         cells = new ArrayList<>(new HashSet<>(cells));
         Utils.sort(cells, Rectangle.ILL_DEFINED_ORDER);
 
+        // corner ids by point; corner i lies at (xs[i], ys[i]) and is shared by sharing[i] cells
+        PackedPointMap corners = new PackedPointMap(cells.size() * 4);
+        int cornerCount = 0;
+        float[] xs = new float[cells.size() * 4], ys = new float[cells.size() * 4];
+        int[] sharing = new int[cells.size() * 4];
         for (Rectangle cell: cells) {
-            for(Point2D pt: cell.getPoints()) {
-                if (pointSet.contains(pt)) {
-                    pointSet.remove(pt);
-                }
-                else {
-                    pointSet.add(pt);
+            for (Point2D pt: cell.getPoints()) {
+                long key = PackedPointMap.key(pt.getX(), pt.getY());
+                int id = corners.get(key);
+                if (id == PackedPointMap.NO_VALUE) {
+                    id = cornerCount++;
+                    corners.put(key, id);
+                    xs[id] = pt.getX();
+                    ys[id] = pt.getY();
                 }
+                sharing[id]++;
             }
         }
 
-        for (List<Point2D> poly : Utils.getPolygonsFromEdges(edgesH, edgesV)) {
+        int vertexCount = 0;
+        int[] vertices = new int[cornerCount];
+        int[] qx = new int[cornerCount], qy = new int[cornerCount];
+        for (int id = 0; id < cornerCount; id++) {
+            if (sharing[id] % 2 == 1) {
+                vertices[vertexCount++] = id;
+                qx[id] = Utils.toHundredths(xs[id]);
+                qy[id] = Utils.toHundredths(ys[id]);
+            }
+        }
+
+        int[] byRow = orderVertices(qy, qx, vertices, vertexCount);
+        int[] byColumn = orderVertices(qx, qy, vertices, vertexCount);
+        int[] edgeH = pairVertices(byRow, qy, cornerCount);
+        int[] edgeV = pairVertices(byColumn, qx, cornerCount);
+
+        boolean[] visited = new boolean[cornerCount];
+        for (int start : byRow) {
+            if (visited[start] || edgeH[start] < 0) {
+                continue;
+            }
             float top = Float.MAX_VALUE, left = Float.MAX_VALUE;
             float bottom = Float.MIN_VALUE, right = Float.MIN_VALUE;
-            for (Point2D pt : poly) {
-                top = Math.min(top, pt.getY());
-                left = Math.min(left, pt.getX());
-                bottom = Math.max(bottom, pt.getY());
-                right = Math.max(right, pt.getX());
+            boolean horizontal = true;
+            for (int v = start; v >= 0 && !visited[v]; horizontal = !horizontal) {
+                visited[v] = true;
+                top = Math.min(top, ys[v]);
+                left = Math.min(left, xs[v]);
+                bottom = Math.max(bottom, ys[v]);
+                right = Math.max(right, xs[v]);
+                v = horizontal ? edgeH[v] : edgeV[v];
             }
             rectangles.add(new Rectangle(top, left, right - left, bottom - top));
         }
@@ -162,6 +206,44 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
         return rectangles;
     }
 
+    // the vertices ordered by primary, then by secondary coordinate
+    private static int[] orderVertices(int[] primary, int[] secondary, int[] vertices, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) secondary[vertices[i]] << 32) | vertices[i];
+        }
+        Arrays.sort(keys);
+        int[] bySecondary = new int[count];
+        for (int i = 0; i < count; i++) {
+            bySecondary[i] = (int) keys[i];
+            keys[i] = ((long) primary[bySecondary[i]] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] ordered = new int[count];
+        for (int i = 0; i < count; i++) {
+            ordered[i] = bySecondary[(int) keys[i]];
+        }
+        return ordered;
+    }
+
+    // joins consecutive vertices of each run of equal position; a vertex left over by a run of
+    // odd length, which cells meeting at a single point can leave, stays unpaired (-1)
+    private static int[] pairVertices(int[] ordered, int[] position, int cornerCount) {
+        int[] other = new int[cornerCount];
+        Arrays.fill(other, -1);
+        for (int i = 0; i + 1 < ordered.length; ) {
+            int a = ordered[i], b = ordered[i + 1];
+            if (position[a] != position[b]) {
+                i++;
+                continue;
+            }
+            other[a] = b;
+            other[b] = a;
+            i += 2;
+        }
+        return other;
+    }
+
     @Override
     public String toString() {
         return "lattice";